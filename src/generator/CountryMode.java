@@ -0,0 +1,43 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator;
+
+/**
+ * How the grid cells are divided into countries.
+ */
+public enum CountryMode
+{
+  /**
+   * Picks country seed cells and grows every country at once in randomized rounds, each country
+   * claiming at most one cell per round, until the whole grid is claimed. Each cell is touched a
+   * constant number of times.
+   */
+  FLOOD_FILL,
+  /**
+   * Starts with one country per grid cell and repeatedly merges random neighboring countries.
+   */
+  GRID_MERGE,
+  /**
+   * Scatters country seed points with Poisson disk sampling and gives every grid cell to its
+   * nearest seed, so countries are the cells of a Voronoi diagram.
+   */
+  VORONOI
+}
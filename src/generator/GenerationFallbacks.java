@@ -0,0 +1,63 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator;
+
+import generator.model.World;
+
+public class GenerationFallbacks
+{
+  /**
+   * Always serves the given world, typically one generated ahead of time.
+   * <p>
+   * The same instance is returned every time, so callers that modify worlds should not share it.
+   */
+  public static GenerationFallback pregenerated( final World world )
+  {
+    return new GenerationFallback()
+    {
+      @Override
+      public World generate( GeneratorConfig config, long seed )
+      {
+        return world;
+      }
+    };
+  }
+
+  /**
+   * Generates a world from the same config and seed with the goal country count scaled down, since
+   * generation time grows much faster than the country count.
+   */
+  public static GenerationFallback smallerSizeClass( final double countryCountScale,
+      final int minGoalCountryCount )
+  {
+    return new GenerationFallback()
+    {
+      @Override
+      public World generate( GeneratorConfig config, long seed )
+      {
+        GeneratorConfig smallerConfig = new GeneratorConfig( config );
+        smallerConfig.goalCountryCount = Math.max( minGoalCountryCount,
+            ( int ) ( config.goalCountryCount * countryCountScale ) );
+        return RandomWorldGenerator.generate( smallerConfig, seed );
+      }
+    };
+  }
+}
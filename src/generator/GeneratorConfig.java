@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator;
+
+/**
+ * Options for a single {@link RandomWorldGenerator} run.
+ */
+public class GeneratorConfig
+{
+  public CountryMode countryMode = CountryMode.GRID_MERGE;
+  /**
+   * The number of grid cells each country should grow to in the {@link CountryMode#FLOOD_FILL}
+   * mode, or 0 for no target. Cells that no country below its target can reach are still claimed
+   * once every other country has stopped growing. The grid has about six cells per country.
+   */
+  public int floodFillTargetSize;
+  /**
+   * How far each flood fill country's target size may vary from {@link #floodFillTargetSize}, as a
+   * fraction of it between 0 and 1. Targets are drawn uniformly from the range.
+   */
+  public double floodFillTargetSizeVariation;
+  public int goalCountryCount;
+  /**
+   * Notified as each generation phase completes, may be null.
+   */
+  public GenerationListener listener;
+  /**
+   * Whether the country and continent layouts should be printed to standard out.
+   */
+  public boolean printLayouts = true;
+  /**
+   * Whether the distance and border analysis should be computed and cached on the world before it
+   * is returned, rather than on first use.
+   */
+  public boolean precomputeAnalysis;
+  /**
+   * Whether starting countries should be placed by greedy farthest point placement, one per
+   * continent, rather than uniformly within each continent.
+   */
+  public boolean spreadStartingCountries;
+
+  public GeneratorConfig( GeneratorConfig config )
+  {
+    countryMode = config.countryMode;
+    floodFillTargetSize = config.floodFillTargetSize;
+    floodFillTargetSizeVariation = config.floodFillTargetSizeVariation;
+    goalCountryCount = config.goalCountryCount;
+    listener = config.listener;
+    printLayouts = config.printLayouts;
+    precomputeAnalysis = config.precomputeAnalysis;
+    spreadStartingCountries = config.spreadStartingCountries;
+  }
+
+  public GeneratorConfig( int goalCountryCount )
+  {
+    this.goalCountryCount = goalCountryCount;
+  }
+}
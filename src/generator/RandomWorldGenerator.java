@@ -24,14 +24,35 @@ import generator.model.Continent;
 import generator.model.Country;
 import generator.model.Edge;
 import generator.model.World;
+import generator.model.WorldView;
+import generator.spatial.KdTree;
+import generator.spatial.Point;
+import generator.spatial.PoissonDiskSampler;
+import generator.util.BitSets;
 import generator.util.Lists;
 import generator.util.Maps;
 import generator.util.Sets;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 /**
  * Generates a random world with an approximate country count.
@@ -40,33 +61,150 @@ import java.util.Set;
  * of grid cells together into variously sized and connected countries and then combining groups of
  * countries together into continents.
  * <p>
+ * In the {@link CountryMode#VORONOI} mode the cells are instead divided up by their nearest country
+ * seed point, which skips the slow merging and gives countries more natural borders. The
+ * {@link CountryMode#FLOOD_FILL} mode also skips merging, growing all countries from seed cells at
+ * once in rounds, in a single linear pass.
+ * <p>
  * The implementation is kept simple by not creating id based indexes of countries and edges that
  * would need to be updated after every grid cell merge, but the simplicity comes at the cost of
- * performance.
+ * performance. Once merging is done the countries are given dense temporary ids, and from then on
+ * sets of countries are kept as bit sets indexed by id.
+ * <p>
+ * All randomness comes from a single seeded {@link Random}, so a config and seed always produce
+ * the same world. Generation checks for cancellation between phases and on every iteration of the
+ * long merging, continent building and continent removal loops, so an interrupted thread, a
+ * cancelled future or a missed deadline stops it promptly with a {@link CancellationException}.
  */
 public class RandomWorldGenerator
 {
   private static final double GRID_CELL_COMBINES_PER_COUNTRY = 2.5;
   private static int MAX_CONTINENT_SIZE = 6;
   private static final int MIN_CONTINENT_SIZE = 2;
+  /**
+   * Seeds closer than the diagonal of a grid cell could share one.
+   */
+  private static final double MIN_VORONOI_SEED_SPACING = 1.5;
   private static final double UNUSED_COUNTRY_OVERAGE = 1.12;
+  /**
+   * The seeded country modes do not merge cells, so they can afford a finer grid.
+   */
+  private static final double SEEDED_CELLS_PER_COUNTRY = 6;
+  private static final ScheduledExecutorService DEADLINE_TIMER = createDeadlineTimer();
 
-  public static World generate( int goalCountryCount )
+  private static ScheduledExecutorService createDeadlineTimer()
+  {
+    ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor( 1, new ThreadFactory()
+    {
+      @Override
+      public Thread newThread( Runnable runnable )
+      {
+        Thread thread = new Thread( runnable, "world-generation-deadlines" );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+    timer.setRemoveOnCancelPolicy( true );
+    return timer;
+  }
+
+  public static World generate( GeneratorConfig config )
   {
-    RandomWorldGenerator randomWorldGenerator = new RandomWorldGenerator( goalCountryCount );
+    return generate( config, new Random().nextLong() );
+  }
+
+  public static World generate( GeneratorConfig config, long seed )
+  {
+    RandomWorldGenerator randomWorldGenerator = new RandomWorldGenerator( config, seed );
     return randomWorldGenerator.generate();
   }
 
+  public static World generate( int goalCountryCount )
+  {
+    return generate( new GeneratorConfig( goalCountryCount ) );
+  }
+
+  /**
+   * Generates the world on the executor. Cancelling the returned future stops the generation at its
+   * next cancellation check.
+   */
+  public static CompletableFuture< World > generateAsync( GeneratorConfig config, long seed,
+      Executor executor )
+  {
+    RandomWorldGenerator randomWorldGenerator = new RandomWorldGenerator( config, seed );
+    return randomWorldGenerator.generateAsync( executor, null );
+  }
+
+  /**
+   * Generates the world on the executor, giving up once the timeout has passed since this call.
+   * <p>
+   * When the deadline is missed the future is completed with the fallback's world instead, or with
+   * a {@link DeadlineExceededException} if the fallback is null. That exception is a
+   * {@link CancellationException}, so it is thrown as is by {@link CompletableFuture#get()}.
+   * <p>
+   * The deadline is enforced by a shared timer rather than by the generation itself, so the future
+   * is completed on time even if the executor is busy or the generation is between cancellation
+   * checks. The generation then stops at its next check. A fallback run by the timer runs on the
+   * default {@link CompletableFuture} async pool, not on the executor, and is not itself bounded by
+   * the deadline.
+   */
+  public static CompletableFuture< World > generateAsync( GeneratorConfig config, long seed,
+      Executor executor, long timeout, TimeUnit unit, final GenerationFallback fallback )
+  {
+    final RandomWorldGenerator randomWorldGenerator = new RandomWorldGenerator( config, seed );
+    randomWorldGenerator.deadlineNanos = System.nanoTime() + unit.toNanos( timeout );
+    randomWorldGenerator.hasDeadline = true;
+    CompletableFuture< World > future = randomWorldGenerator.generateAsync( executor, fallback );
+
+    final ScheduledFuture< ? > deadline = DEADLINE_TIMER.schedule( new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        randomWorldGenerator.completeAfterDeadline( fallback, true );
+      }
+    }, timeout, unit );
+    future.whenComplete( new BiConsumer< World, Throwable >()
+    {
+      @Override
+      public void accept( World world, Throwable throwable )
+      {
+        deadline.cancel( false );
+      }
+    } );
+    return future;
+  }
+
   private final Country[][] cellGrid;
-  private Set< Country > countriesNotUsedInContinents;
-  private final Set< Country > countriesUsedInContinents = Sets.of();
+  private final GeneratorConfig config;
+  private Country[] countriesByTemporaryId;
+  private BitSet countriesNotUsedInContinents;
+  private final BitSet countriesUsedInContinents = new BitSet();
+  private final AtomicBoolean deadlineHandled = new AtomicBoolean();
+  private long deadlineNanos;
+  private CompletableFuture< World > future;
   private final int gridHeight;
   private final int gridWidth;
+  private boolean hasDeadline;
+  private final Random random;
+  private final long seed;
+  /**
+   * Compressed sparse row adjacency by temporary id, the neighbors of country <code>i</code> being
+   * <code>temporaryNeighbors[temporaryNeighborOffsets[i]]</code> up to the next offset.
+   */
+  private int[] temporaryNeighborOffsets;
+  private int[] temporaryNeighbors;
   private final World world = new World();
 
-  private RandomWorldGenerator( int goalCountryCount )
+  private RandomWorldGenerator( GeneratorConfig config, long seed )
   {
-    int gridCellCount = ( int ) ( goalCountryCount * GRID_CELL_COMBINES_PER_COUNTRY * UNUSED_COUNTRY_OVERAGE );
+    this.config = config;
+    this.seed = seed;
+    random = new Random( seed );
+    double cellsPerCountry = ( config.countryMode == CountryMode.GRID_MERGE )
+        ? GRID_CELL_COMBINES_PER_COUNTRY : SEEDED_CELLS_PER_COUNTRY;
+    int gridCellCount =
+        ( int ) ( config.goalCountryCount * cellsPerCountry * UNUSED_COUNTRY_OVERAGE );
     gridWidth = ( int ) Math.sqrt( gridCellCount );
     gridHeight = gridWidth + 1;
     cellGrid = new Country[gridWidth][gridHeight];
@@ -90,14 +228,35 @@ public class RandomWorldGenerator
   private void assignTemporaryCountryIds()
   {
     Set< Country > countries = collectAllCountries();
+    countriesByTemporaryId = new Country[countries.size()];
     int id = 0;
     Iterator< Country > iterator = countries.iterator();
     while ( iterator.hasNext() )
     {
       Country country = iterator.next();
       country.id = id;
+      countriesByTemporaryId[id] = country;
       id++;
     }
+
+    // Edges no longer change until continents are made, so their adjacency is indexed once here.
+    temporaryNeighborOffsets = new int[countriesByTemporaryId.length + 1];
+    for ( Edge edge : world.edges )
+    {
+      temporaryNeighborOffsets[edge.leftCountry.id + 1]++;
+      temporaryNeighborOffsets[edge.rightCountry.id + 1]++;
+    }
+    for ( int i = 0; i < countriesByTemporaryId.length; i++ )
+    {
+      temporaryNeighborOffsets[i + 1] += temporaryNeighborOffsets[i];
+    }
+    temporaryNeighbors = new int[temporaryNeighborOffsets[countriesByTemporaryId.length]];
+    int[] fill = Arrays.copyOf( temporaryNeighborOffsets, countriesByTemporaryId.length );
+    for ( Edge edge : world.edges )
+    {
+      temporaryNeighbors[fill[edge.leftCountry.id]++] = edge.rightCountry.id;
+      temporaryNeighbors[fill[edge.rightCountry.id]++] = edge.leftCountry.id;
+    }
   }
 
   private void calculateMaxRounds()
@@ -111,30 +270,190 @@ public class RandomWorldGenerator
    */
   private int chooseContinentBonus( Continent continent )
   {
-    return ( int ) ( ( continent.countries.size() - 1 ) + ( -1.5 + ( Math.random() * 4 ) ) );
+    return ( int ) ( ( continent.countries.size() - 1 ) + ( -1.5 + ( random.nextDouble() * 4 ) ) );
   }
 
-  private void chooseStartingCountries()
+  /**
+   * Returns the target size of every flood fill country, drawn uniformly from the configured
+   * target size plus or minus its variation, or unbounded sizes if there is no target.
+   */
+  private int[] chooseFloodFillTargetSizes( int countryCount )
   {
-    for ( Continent continent : world.continents )
+    int[] targetSizes = new int[countryCount];
+    if ( config.floodFillTargetSize <= 0 )
     {
-      Country startingCountry = Lists.chooseRandom( continent.countries );
-      world.startingCountries.add( startingCountry );
+      Arrays.fill( targetSizes, Integer.MAX_VALUE );
+      return targetSizes;
     }
 
-    world.wastelandCountries.removeAll( world.startingCountries );
+    double variation = Math.min( 1, Math.max( 0, config.floodFillTargetSizeVariation ) );
+    for ( int i = 0; i < countryCount; i++ )
+    {
+      double scale = 1 + ( variation * ( ( random.nextDouble() * 2 ) - 1 ) );
+      targetSizes[i] = Math.max( 1, ( int ) Math.round( config.floodFillTargetSize * scale ) );
+    }
+    return targetSizes;
   }
 
+  /**
+   * Chooses one starting country per continent by greedy farthest point placement. The first start
+   * is a random country and each following one is whichever country is furthest from the starts
+   * chosen so far, among the continents that do not have a start yet.
+   * <p>
+   * Because every continent must get a start, neighboring countries can still both end up as
+   * starts; the placement raises the typical distance between starts rather than guaranteeing a
+   * minimum. The distance to the nearest start is kept for every country and after each placement a
+   * breadth first search from the new start lowers it where the new start is closer, so each
+   * placement step is linear in the size of the country graph.
+   */
+  private void chooseSpreadStartingCountries()
+  {
+    // The world's own view is cached, so a separate one is built before the starts are chosen.
+    WorldView view = new WorldView( world );
+    int countryCount = view.getCountryCount();
+    if ( countryCount == 0 )
+    {
+      return;
+    }
+    int[] distances = new int[countryCount];
+    Arrays.fill( distances, Integer.MAX_VALUE );
+    int[] queue = new int[countryCount];
+    boolean[] continentsWithStarts = new boolean[view.getContinentCount()];
+
+    int startingCountry = random.nextInt( countryCount );
+    for ( int i = 0; i < view.getContinentCount(); i++ )
+    {
+      checkCancelled();
+
+      world.startingCountries.set( startingCountry );
+      continentsWithStarts[view.getContinentIndex( startingCountry )] = true;
+
+      distances[startingCountry] = 0;
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = startingCountry;
+      while ( head < tail )
+      {
+        int country = queue[head++];
+        for ( int j = 0; j < view.getNeighborCount( country ); j++ )
+        {
+          int neighbor = view.getNeighbor( country, j );
+          if ( ( distances[country] + 1 ) < distances[neighbor] )
+          {
+            distances[neighbor] = distances[country] + 1;
+            queue[tail++] = neighbor;
+          }
+        }
+      }
+
+      int furthestDistance = -1;
+      int tieCount = 0;
+      for ( int country = 0; country < countryCount; country++ )
+      {
+        if ( continentsWithStarts[view.getContinentIndex( country )] )
+        {
+          continue;
+        }
+        if ( distances[country] > furthestDistance )
+        {
+          furthestDistance = distances[country];
+          startingCountry = country;
+          tieCount = 1;
+        }
+        else if ( ( distances[country] == furthestDistance )
+            && ( random.nextInt( ++tieCount ) == 0 ) )
+        {
+          startingCountry = country;
+        }
+      }
+    }
+  }
+
+  private void chooseStartingCountries()
+  {
+    if ( config.spreadStartingCountries )
+    {
+      chooseSpreadStartingCountries();
+    }
+    else
+    {
+      for ( Continent continent : world.continents )
+      {
+        Country startingCountry = Lists.chooseRandom( continent.countries, random );
+        world.startingCountries.set( startingCountry.id );
+      }
+    }
+  }
+
+  /**
+   * Chooses the wastelands without replacement from the countries that are not starting countries,
+   * so the requested number of wastelands is always delivered when there are enough countries.
+   */
   private void chooseWastelandCountries()
   {
-    Set< Country > continentCountries = collectCountriesInContinents();
+    int countryCount = world.countriesById.size();
+    int[] candidates = new int[countryCount - world.startingCountries.cardinality()];
+    int candidate = world.startingCountries.nextClearBit( 0 );
+    for ( int i = 0; i < candidates.length; i++ )
+    {
+      candidates[i] = candidate;
+      candidate = world.startingCountries.nextClearBit( candidate + 1 );
+    }
 
     int wastelandCount = ( int ) ( world.continents.size() / 2.4 );
-    for ( int i = 0; i < wastelandCount; i++ )
+    BitSet chosen = BitSets.chooseRandomSubset( candidates.length, wastelandCount, random );
+    world.wastelandCountries = new BitSet( countryCount );
+    for ( int i = chosen.nextSetBit( 0 ); i >= 0; i = chosen.nextSetBit( i + 1 ) )
+    {
+      world.wastelandCountries.set( candidates[i] );
+    }
+  }
+
+  /**
+   * Throws a {@link CancellationException} if the thread was interrupted, the future was cancelled
+   * or the deadline has passed.
+   */
+  private void checkCancelled()
+  {
+    if ( Thread.currentThread().isInterrupted() )
+    {
+      throw new CancellationException( "Generation was interrupted" );
+    }
+    if ( ( future != null ) && future.isCancelled() )
+    {
+      throw new CancellationException( "Generation was cancelled" );
+    }
+    if ( hasDeadline && ( ( System.nanoTime() - deadlineNanos ) > 0 ) )
+    {
+      throw new DeadlineExceededException();
+    }
+  }
+
+  /**
+   * Fills the array with the unclaimed cells beside the cell and returns how many there are.
+   */
+  private int collectUnclaimedNeighbors( int cell, int[] owners, int[] unclaimedNeighbors )
+  {
+    int x = cell / gridHeight;
+    int y = cell % gridHeight;
+    int count = 0;
+    if ( ( x > 0 ) && ( owners[cell - gridHeight] < 0 ) )
+    {
+      unclaimedNeighbors[count++] = cell - gridHeight;
+    }
+    if ( ( ( x + 1 ) < gridWidth ) && ( owners[cell + gridHeight] < 0 ) )
     {
-      Country wastelandCountry = Lists.chooseRandom( continentCountries );
-      world.wastelandCountries.add( wastelandCountry );
+      unclaimedNeighbors[count++] = cell + gridHeight;
     }
+    if ( ( y > 0 ) && ( owners[cell - 1] < 0 ) )
+    {
+      unclaimedNeighbors[count++] = cell - 1;
+    }
+    if ( ( ( y + 1 ) < gridHeight ) && ( owners[cell + 1] < 0 ) )
+    {
+      unclaimedNeighbors[count++] = cell + 1;
+    }
+    return count;
   }
 
   private Set< Country > collectAllCountries()
@@ -148,6 +467,16 @@ public class RandomWorldGenerator
     return countries;
   }
 
+  /**
+   * Returns the temporary ids of every country.
+   */
+  private BitSet collectAllCountryIds()
+  {
+    BitSet ids = new BitSet( countriesByTemporaryId.length );
+    ids.set( 0, countriesByTemporaryId.length );
+    return ids;
+  }
+
   private Map< Country, Continent > collectContinentsByCountry()
   {
     Map< Country, Continent > continentsByCountry = Maps.of();
@@ -171,14 +500,27 @@ public class RandomWorldGenerator
     return countries;
   }
 
+  private BitSet collectCountryIds( Collection< Country > countries )
+  {
+    BitSet ids = new BitSet( countriesByTemporaryId.length );
+    for ( Country country : countries )
+    {
+      ids.set( country.id );
+    }
+    return ids;
+  }
+
   private void combineCountryCells()
   {
     double combineCount = ( ( gridWidth * gridHeight ) * ( GRID_CELL_COMBINES_PER_COUNTRY - 1 ) )
         / GRID_CELL_COMBINES_PER_COUNTRY;
     for ( int i = 0; i < combineCount; i++ )
     {
-      Country barCountry = Lists.chooseRandom( collectAllCountries() );
-      Country fooCountry = Lists.chooseRandom( world.collectNeighborCountries( barCountry ) );
+      checkCancelled();
+
+      Country barCountry = Lists.chooseRandom( collectAllCountries(), random );
+      Country fooCountry =
+          Lists.chooseRandom( world.collectNeighborCountries( barCountry ), random );
 
       if ( fooCountry.equals( barCountry ) )
       {
@@ -191,30 +533,168 @@ public class RandomWorldGenerator
     }
   }
 
+  /**
+   * Completes the future with the fallback's world, or exceptionally if there is no fallback,
+   * unless the future is already done or the deadline has already been handled. Called both by the
+   * timer and by the generation when it notices the deadline, whichever comes first. The timer
+   * hands the fallback to the async pool so that one slow fallback cannot hold up other deadlines.
+   */
+  private void completeAfterDeadline( final GenerationFallback fallback, boolean fromTimer )
+  {
+    if ( future.isDone() || !deadlineHandled.compareAndSet( false, true ) )
+    {
+      return;
+    }
+    if ( fallback == null )
+    {
+      future.completeExceptionally( new DeadlineExceededException() );
+      return;
+    }
+
+    Runnable runFallback = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          future.complete( fallback.generate( config, seed ) );
+        }
+        catch ( Throwable t )
+        {
+          future.completeExceptionally( t );
+        }
+      }
+    };
+    if ( fromTimer )
+    {
+      CompletableFuture.runAsync( runFallback );
+    }
+    else
+    {
+      runFallback.run();
+    }
+  }
+
+  /**
+   * Reports the time since the phase started to the listener, and returns the current time as the
+   * start of the next phase.
+   */
+  private long completePhase( String phase, long phaseStartNanos )
+  {
+    long nanos = System.nanoTime();
+    if ( config.listener != null )
+    {
+      config.listener.phaseCompleted( phase, nanos - phaseStartNanos );
+    }
+    checkCancelled();
+    return nanos;
+  }
+
   private World generate()
   {
-    initCountries();
-    initEdges();
+    checkCancelled();
 
-    combineCountryCells();
+    long phaseStart = System.nanoTime();
+    if ( config.countryMode == CountryMode.GRID_MERGE )
+    {
+      initCountries();
+      phaseStart = completePhase( "initCountries", phaseStart );
+      initEdges();
+      phaseStart = completePhase( "initEdges", phaseStart );
+
+      combineCountryCells();
+      phaseStart = completePhase( "combineCountryCells", phaseStart );
+    }
+    else
+    {
+      if ( config.countryMode == CountryMode.VORONOI )
+      {
+        initVoronoiCountries();
+        phaseStart = completePhase( "initVoronoiCountries", phaseStart );
+      }
+      else
+      {
+        initFloodFillCountries();
+        phaseStart = completePhase( "initFloodFillCountries", phaseStart );
+      }
+      initEdges();
+      removeDuplicateAndCircularEdges();
+      phaseStart = completePhase( "initEdges", phaseStart );
+    }
     assignTemporaryCountryIds();
+    phaseStart = completePhase( "assignTemporaryCountryIds", phaseStart );
     makeContinents();
+    phaseStart = completePhase( "makeContinents", phaseStart );
     removeUnusedEdges();
+    phaseStart = completePhase( "removeUnusedEdges", phaseStart );
     removeUnconnectedContinents();
+    phaseStart = completePhase( "removeUnconnectedContinents", phaseStart );
 
     assignFinalCountryIds();
+    phaseStart = completePhase( "assignFinalCountryIds", phaseStart );
     calculateMaxRounds();
+    phaseStart = completePhase( "calculateMaxRounds", phaseStart );
 
-    chooseWastelandCountries();
     chooseStartingCountries();
+    phaseStart = completePhase( "chooseStartingCountries", phaseStart );
+    chooseWastelandCountries();
+    phaseStart = completePhase( "chooseWastelandCountries", phaseStart );
 
-    printCountryLayout();
-    printContinentLayout();
-    printContinentSummary();
+    if ( config.printLayouts )
+    {
+      printCountryLayout();
+      printContinentLayout();
+      printContinentSummary();
+      phaseStart = completePhase( "printLayouts", phaseStart );
+    }
+
+    if ( config.precomputeAnalysis )
+    {
+      world.getAnalysis();
+      completePhase( "precomputeAnalysis", phaseStart );
+    }
 
     return world;
   }
 
+  private CompletableFuture< World > generateAsync( Executor executor,
+      final GenerationFallback fallback )
+  {
+    future = new CompletableFuture< World >();
+    try
+    {
+      executor.execute( new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          if ( future.isDone() )
+          {
+            return;
+          }
+          try
+          {
+            future.complete( generate() );
+          }
+          catch ( DeadlineExceededException e )
+          {
+            completeAfterDeadline( fallback, false );
+          }
+          catch ( Throwable t )
+          {
+            future.completeExceptionally( t );
+          }
+        }
+      } );
+    }
+    catch ( RejectedExecutionException e )
+    {
+      future.completeExceptionally( e );
+    }
+    return future;
+  }
+
   private void initCountries()
   {
     for ( int x = 0; x < gridWidth; x++ )
@@ -247,36 +727,205 @@ public class RandomWorldGenerator
     }
   }
 
+  /**
+   * Grows every country at once from a randomly chosen seed cell, in rounds.
+   * <p>
+   * Each country keeps a queue of its claimed cells that may still have unclaimed neighbors. In
+   * every round the growing countries take turns in a shuffled order, and each claims one random
+   * unclaimed neighbor of the oldest cell in its queue, dropping cells from the front of the queue
+   * that have none left. Since every country claims at most one cell per round, countries grow at
+   * the same rate whatever their size. A country stops growing once its queue is empty or it has
+   * reached its target size. Countries that stopped at their target only resume, unbounded, to
+   * claim pockets that no other country could reach. Every cell joins and leaves one queue once and
+   * is claimed once, so the pass is linear in the grid size.
+   */
+  private void initFloodFillCountries()
+  {
+    int cellCount = gridWidth * gridHeight;
+    int seedCount = Math.max( 1,
+        Math.min( cellCount, ( int ) ( config.goalCountryCount * UNUSED_COUNTRY_OVERAGE ) ) );
+
+    int[] owners = new int[cellCount];
+    Arrays.fill( owners, -1 );
+    int[] sizes = new int[seedCount];
+    int[] targetSizes = chooseFloodFillTargetSizes( seedCount );
+    Country[] countries = new Country[seedCount];
+    // The queues are linked lists threaded through one array, since each cell is in at most one.
+    int[] queueHeads = new int[seedCount];
+    int[] queueTails = new int[seedCount];
+    int[] nextQueuedCells = new int[cellCount];
+
+    // A partial Fisher-Yates shuffle picks the distinct seed cells.
+    int[] cells = new int[cellCount];
+    for ( int i = 0; i < cellCount; i++ )
+    {
+      cells[i] = i;
+    }
+    for ( int i = 0; i < seedCount; i++ )
+    {
+      int j = i + random.nextInt( cellCount - i );
+      int cell = cells[j];
+      cells[j] = cells[i];
+      cells[i] = cell;
+
+      owners[cell] = i;
+      sizes[i] = 1;
+      countries[i] = new Country( cell / gridHeight, cell % gridHeight );
+      queueHeads[i] = cell;
+      queueTails[i] = cell;
+      nextQueuedCells[cell] = -1;
+    }
+
+    // The seed shuffle is no longer needed, so its array holds the growing countries.
+    int[] growing = cells;
+    int growingCount = seedCount;
+    for ( int i = 0; i < seedCount; i++ )
+    {
+      growing[i] = i;
+    }
+    boolean bounded = config.floodFillTargetSize > 0;
+    int[] unclaimedNeighbors = new int[4];
+    while ( growingCount > 0 )
+    {
+      checkCancelled();
+
+      for ( int i = growingCount - 1; i > 0; i-- )
+      {
+        int j = random.nextInt( i + 1 );
+        int country = growing[j];
+        growing[j] = growing[i];
+        growing[i] = country;
+      }
+
+      int stillGrowingCount = 0;
+      for ( int i = 0; i < growingCount; i++ )
+      {
+        int country = growing[i];
+        int claimed = -1;
+        while ( queueHeads[country] >= 0 )
+        {
+          int cell = queueHeads[country];
+          int unclaimedNeighborCount =
+              collectUnclaimedNeighbors( cell, owners, unclaimedNeighbors );
+          if ( unclaimedNeighborCount > 0 )
+          {
+            claimed = unclaimedNeighbors[random.nextInt( unclaimedNeighborCount )];
+            break;
+          }
+          queueHeads[country] = nextQueuedCells[cell];
+        }
+        if ( claimed < 0 )
+        {
+          continue;
+        }
+
+        owners[claimed] = country;
+        sizes[country]++;
+        nextQueuedCells[claimed] = -1;
+        nextQueuedCells[queueTails[country]] = claimed;
+        queueTails[country] = claimed;
+        if ( !bounded || ( sizes[country] < targetSizes[country] ) )
+        {
+          growing[stillGrowingCount++] = country;
+        }
+      }
+      growingCount = stillGrowingCount;
+
+      if ( ( growingCount == 0 ) && bounded )
+      {
+        bounded = false;
+        for ( int country = 0; country < seedCount; country++ )
+        {
+          if ( queueHeads[country] >= 0 )
+          {
+            growing[growingCount++] = country;
+          }
+        }
+      }
+    }
+
+    for ( int x = 0; x < gridWidth; x++ )
+    {
+      for ( int y = 0; y < gridHeight; y++ )
+      {
+        cellGrid[x][y] = countries[owners[( x * gridHeight ) + y]];
+      }
+    }
+  }
+
+  /**
+   * Scatters the country seeds and gives every grid cell to the country of its nearest seed.
+   * <p>
+   * Seeds are spaced far enough apart that no two fall in the same grid cell, so each country can
+   * use the cell its seed falls in as its original cell.
+   */
+  private void initVoronoiCountries()
+  {
+    double seedCount = config.goalCountryCount * UNUSED_COUNTRY_OVERAGE;
+    double seedSpacing =
+        Math.sqrt( ( PoissonDiskSampler.DENSITY * gridWidth * gridHeight ) / seedCount );
+    List< Point > seeds = PoissonDiskSampler.sample( gridWidth, gridHeight,
+        Math.max( MIN_VORONOI_SEED_SPACING, seedSpacing ), random );
+
+    Country[] seedCountries = new Country[seeds.size()];
+    for ( int i = 0; i < seeds.size(); i++ )
+    {
+      seedCountries[i] = new Country( ( int ) seeds.get( i ).x, ( int ) seeds.get( i ).y );
+    }
+
+    KdTree seedTree = new KdTree( seeds );
+    for ( int x = 0; x < gridWidth; x++ )
+    {
+      checkCancelled();
+
+      for ( int y = 0; y < gridHeight; y++ )
+      {
+        cellGrid[x][y] = seedCountries[seedTree.nearest( x + 0.5, y + 0.5 )];
+      }
+    }
+  }
+
   private void makeContinents()
   {
-    countriesNotUsedInContinents = collectAllCountries();
-    countriesNotUsedInContinents.removeAll( countriesUsedInContinents );
+    countriesNotUsedInContinents = collectAllCountryIds();
+    countriesNotUsedInContinents.andNot( countriesUsedInContinents );
 
+    // The continent's neighbors grow with it, so neither set is rebuilt on each growth step.
+    BitSet neighborCountries = new BitSet( countriesByTemporaryId.length );
+    BitSet unusedNeighborCountries = new BitSet( countriesByTemporaryId.length );
     while ( !countriesNotUsedInContinents.isEmpty() )
     {
-      Country continentSeedCountry = Lists.chooseRandom( countriesNotUsedInContinents );
+      checkCancelled();
+
+      int continentSeedCountryId = BitSets.chooseRandom( countriesNotUsedInContinents, random );
+      Country continentSeedCountry = countriesByTemporaryId[continentSeedCountryId];
       Continent continent = new Continent();
       continent.countries.add( continentSeedCountry );
-      countriesUsedInContinents.add( continentSeedCountry );
+      countriesUsedInContinents.set( continentSeedCountry.id );
+      neighborCountries.clear();
+      setTemporaryNeighbors( continentSeedCountry.id, neighborCountries );
       do
       {
-        Set< Country > unusedNeighborCountries = world.collectNeighborCountries( continent );
-        unusedNeighborCountries.removeAll( countriesUsedInContinents );
+        unusedNeighborCountries.clear();
+        unusedNeighborCountries.or( neighborCountries );
+        unusedNeighborCountries.andNot( countriesUsedInContinents );
 
         if ( unusedNeighborCountries.isEmpty() )
         {
           break;
         }
 
-        Country nextCountry = Lists.chooseRandom( unusedNeighborCountries );
+        int nextCountryId = BitSets.chooseRandom( unusedNeighborCountries, random );
+        Country nextCountry = countriesByTemporaryId[nextCountryId];
         continent.countries.add( nextCountry );
-        countriesUsedInContinents.add( nextCountry );
+        countriesUsedInContinents.set( nextCountry.id );
+        setTemporaryNeighbors( nextCountry.id, neighborCountries );
 
         if ( continent.countries.size() > MAX_CONTINENT_SIZE )
         {
           break;
         }
-      } while ( Math.random() < 0.7 );
+      } while ( random.nextDouble() < 0.7 );
 
       if ( continent.countries.size() > ( MIN_CONTINENT_SIZE - 1 ) )
       {
@@ -285,18 +934,20 @@ public class RandomWorldGenerator
         world.continents.add( continent );
       }
 
-      countriesNotUsedInContinents = collectAllCountries();
-      countriesNotUsedInContinents.removeAll( countriesUsedInContinents );
+      countriesNotUsedInContinents.andNot( countriesUsedInContinents );
     }
 
-    countriesNotUsedInContinents = collectAllCountries();
-    countriesNotUsedInContinents.removeAll( collectCountriesInContinents() );
+    countriesNotUsedInContinents = collectAllCountryIds();
+    countriesNotUsedInContinents.andNot( collectCountryIds( collectCountriesInContinents() ) );
   }
 
   private void mergeIntoCountry( Country country, Country intoCountry )
   {
     for ( Edge edge : world.edges )
     {
+      // Every edge scans the whole grid, so a single merge can take seconds on large grids.
+      checkCancelled();
+
       if ( edge.leftCountry.equals( country ) )
       {
         edge.leftCountry = intoCountry;
@@ -403,6 +1054,8 @@ public class RandomWorldGenerator
     Iterator< Continent > iterator = world.continents.iterator();
     while ( iterator.hasNext() )
     {
+      checkCancelled();
+
       Continent continent = iterator.next();
 
       Set< Country > neighborCountries = world.collectNeighborCountries( continent );
@@ -422,11 +1075,23 @@ public class RandomWorldGenerator
     while ( iterator.hasNext() )
     {
       Edge edge = iterator.next();
-      if ( countriesNotUsedInContinents.contains( edge.leftCountry )
-          || countriesNotUsedInContinents.contains( edge.rightCountry ) )
+      if ( countriesNotUsedInContinents.get( edge.leftCountry.id )
+          || countriesNotUsedInContinents.get( edge.rightCountry.id ) )
       {
         iterator.remove();
       }
     }
   }
+
+  /**
+   * Sets the temporary ids of the country's neighbors in the set.
+   */
+  private void setTemporaryNeighbors( int countryId, BitSet ids )
+  {
+    for ( int i = temporaryNeighborOffsets[countryId]; i < temporaryNeighborOffsets[countryId + 1];
+        i++ )
+    {
+      ids.set( temporaryNeighbors[i] );
+    }
+  }
 }
@@ -0,0 +1,473 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.bench;
+
+import generator.CountryMode;
+import generator.GenerationListener;
+import generator.GeneratorConfig;
+import generator.RandomWorldGenerator;
+import generator.util.Lists;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Runs the generator at doubling country counts and fits the empirical complexity exponent of
+ * every phase, so that changes which make generation scale worse can be caught.
+ * <p>
+ * Each size is generated a few times from the same seed, so every repeat and every run of the
+ * harness times the same world, and the fastest time of each phase is kept. Exponents are the least
+ * squares slope of log time against log country count, fitted only over the timings long enough to
+ * rise well above timer noise, and phases with fewer than three such timings get no exponent.
+ * Sizes keep doubling until a single run takes longer than the run limit, since the slower phases
+ * make the largest sizes impractical. The country mode is chosen with <code>--mode</code>.
+ * <p>
+ * With <code>--record</code> the results are written to the baseline file. Otherwise, when a
+ * baseline exists, the run fails with a non zero exit code if any phase's exponent grew by more
+ * than the exponent tolerance, a phase without an exponent in the baseline now has one, any phase
+ * got slower than the time tolerance factor times its baseline time (or times 100 ms, for phases
+ * faster than that), or the run no longer reaches the largest size the baseline did. A baseline
+ * is only compared against runs in the mode it was recorded in, and is only meaningful on the
+ * machine it was recorded on.
+ */
+public class ScalingHarness
+{
+  private static final int MIN_FIT_COUNT = 3;
+  private static final long MIN_FIT_NANOS = 10000000L;
+  /**
+   * Timings shorter than this can vary by more than twice between runs of identical code, so the
+   * time check allows phases faster than this as long as they stay under it times the tolerance.
+   */
+  private static final long MIN_TIME_CHECK_NANOS = 100000000L;
+  private static final String TOTAL = "total";
+  private static final long WARM_UP_NANOS = 3000000000L;
+
+  public static void main( String[] args ) throws IOException
+  {
+    ScalingHarness harness = new ScalingHarness();
+    for ( int i = 0; i < args.length; i++ )
+    {
+      String arg = args[i];
+      if ( arg.equals( "--record" ) )
+      {
+        harness.record = true;
+        continue;
+      }
+      if ( ( i + 1 ) >= args.length )
+      {
+        throw new IllegalArgumentException( "Missing value for " + arg );
+      }
+      String value = args[++i];
+      if ( arg.equals( "--min" ) )
+      {
+        harness.minCountryCount = Integer.parseInt( value );
+      }
+      else if ( arg.equals( "--max" ) )
+      {
+        harness.maxCountryCount = Integer.parseInt( value );
+      }
+      else if ( arg.equals( "--repeats" ) )
+      {
+        harness.repeats = Integer.parseInt( value );
+      }
+      else if ( arg.equals( "--max-run-seconds" ) )
+      {
+        harness.maxRunNanos = ( long ) ( Double.parseDouble( value ) * 1e9 );
+      }
+      else if ( arg.equals( "--mode" ) )
+      {
+        harness.countryMode = CountryMode.valueOf( value );
+      }
+      else if ( arg.equals( "--seed" ) )
+      {
+        harness.seed = Long.parseLong( value );
+      }
+      else if ( arg.equals( "--baseline" ) )
+      {
+        harness.baselinePath = value;
+      }
+      else if ( arg.equals( "--exponent-tolerance" ) )
+      {
+        harness.exponentTolerance = Double.parseDouble( value );
+      }
+      else if ( arg.equals( "--time-tolerance" ) )
+      {
+        harness.timeTolerance = Double.parseDouble( value );
+      }
+      else
+      {
+        throw new IllegalArgumentException( "Unknown argument " + arg );
+      }
+    }
+
+    List< String > regressions = harness.run();
+    if ( !regressions.isEmpty() )
+    {
+      for ( String regression : regressions )
+      {
+        System.out.println( "REGRESSION: " + regression );
+      }
+      System.exit( 1 );
+    }
+  }
+
+  private String baselinePath = "scaling-baseline.properties";
+  private CountryMode countryMode = CountryMode.GRID_MERGE;
+  private double exponentTolerance = 0.5;
+  private int maxCountryCount = 65536;
+  private long maxRunNanos = 30000000000L;
+  private int minCountryCount = 64;
+  private final Set< String > phases = new LinkedHashSet< String >();
+  private boolean record;
+  private int repeats = 5;
+  private final List< Sample > samples = Lists.of();
+  private long seed;
+  private double timeTolerance = 2.0;
+
+  private static class Sample
+  {
+    int countryCount;
+    long gcMillis;
+    final Map< String, Long > nanosByPhase = new LinkedHashMap< String, Long >();
+    long peakHeapBytes;
+  }
+
+  private List< String > checkAgainst( Properties baseline )
+  {
+    List< String > regressions = Lists.of();
+
+    String baselineCountryMode =
+        baseline.getProperty( "countryMode", CountryMode.GRID_MERGE.name() );
+    if ( !baselineCountryMode.equals( countryMode.name() ) )
+    {
+      regressions.add( "the baseline was recorded in the " + baselineCountryMode
+          + " mode, not " + countryMode.name() );
+      return regressions;
+    }
+
+    int baselineMaxCountryCount =
+        Integer.parseInt( baseline.getProperty( "maxCountryCount", "0" ) );
+    int reachedCountryCount = collectReachedCountryCount();
+    if ( reachedCountryCount < baselineMaxCountryCount )
+    {
+      regressions.add( "only reached " + reachedCountryCount + " countries within the run limit, "
+          + "the baseline reached " + baselineMaxCountryCount );
+    }
+
+    for ( String phase : phases )
+    {
+      String baselineExponent = baseline.getProperty( "phase." + phase + ".exponent" );
+      double exponent = fitExponent( phase );
+      if ( ( baselineExponent == null ) && !Double.isNaN( exponent ) )
+      {
+        regressions.add( String.format( "%s now grows measurably with exponent %.2f, the baseline "
+            + "was too fast to fit one", phase, exponent ) );
+      }
+      else if ( ( baselineExponent != null ) && !Double.isNaN( exponent ) )
+      {
+        double allowed = Double.parseDouble( baselineExponent ) + exponentTolerance;
+        if ( exponent > allowed )
+        {
+          regressions.add( String.format( "%s exponent %.2f exceeds baseline %s + %.2f", phase,
+              exponent, baselineExponent, exponentTolerance ) );
+        }
+      }
+
+      for ( Sample sample : samples )
+      {
+        String baselineNanos = baseline.getProperty( "phase." + phase + ".nanos."
+            + sample.countryCount );
+        Long nanos = sample.nanosByPhase.get( phase );
+        if ( ( baselineNanos == null ) || ( nanos == null ) )
+        {
+          continue;
+        }
+        long allowedNanos = ( long ) ( Math.max( Long.parseLong( baselineNanos ),
+            MIN_TIME_CHECK_NANOS ) * timeTolerance );
+        if ( nanos > allowedNanos )
+        {
+          regressions.add( String.format( "%s took %.1f ms at %d countries, baseline %.1f ms",
+              phase, nanos / 1e6, sample.countryCount, Long.parseLong( baselineNanos ) / 1e6 ) );
+        }
+      }
+    }
+
+    return regressions;
+  }
+
+  private static long collectGcMillis()
+  {
+    long millis = 0;
+    for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() )
+    {
+      millis += Math.max( 0, collector.getCollectionTime() );
+    }
+    return millis;
+  }
+
+  private static long collectPeakHeapBytes()
+  {
+    long bytes = 0;
+    for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+    {
+      if ( pool.getType() == MemoryType.HEAP )
+      {
+        bytes += pool.getPeakUsage().getUsed();
+      }
+    }
+    return bytes;
+  }
+
+  private int collectReachedCountryCount()
+  {
+    return samples.isEmpty() ? 0 : samples.get( samples.size() - 1 ).countryCount;
+  }
+
+  /**
+   * Returns the least squares slope of log time against log country count, or NaN if fewer than
+   * three sizes took long enough to measure.
+   */
+  private double fitExponent( String phase )
+  {
+    int n = 0;
+    double sumX = 0;
+    double sumY = 0;
+    double sumXX = 0;
+    double sumXY = 0;
+    for ( Sample sample : samples )
+    {
+      Long nanos = sample.nanosByPhase.get( phase );
+      if ( ( nanos == null ) || ( nanos < MIN_FIT_NANOS ) )
+      {
+        continue;
+      }
+      double x = Math.log( sample.countryCount );
+      double y = Math.log( nanos );
+      n++;
+      sumX += x;
+      sumY += y;
+      sumXX += x * x;
+      sumXY += x * y;
+    }
+    if ( n < MIN_FIT_COUNT )
+    {
+      return Double.NaN;
+    }
+    return ( ( n * sumXY ) - ( sumX * sumY ) ) / ( ( n * sumXX ) - ( sumX * sumX ) );
+  }
+
+  private void printSample( Sample sample )
+  {
+    StringBuilder line = new StringBuilder();
+    line.append( String.format( "%7d countries  %9.1f ms total  %7.1f MB peak heap  %6d ms gc",
+        sample.countryCount, sample.nanosByPhase.get( TOTAL ) / 1e6,
+        sample.peakHeapBytes / ( 1024.0 * 1024.0 ), sample.gcMillis ) );
+    for ( Map.Entry< String, Long > entry : sample.nanosByPhase.entrySet() )
+    {
+      if ( !entry.getKey().equals( TOTAL ) )
+      {
+        line.append( String.format( "%n    %-28s %9.1f ms", entry.getKey(),
+            entry.getValue() / 1e6 ) );
+      }
+    }
+    System.out.println( line );
+  }
+
+  private Properties readBaseline() throws IOException
+  {
+    if ( !new File( baselinePath ).isFile() )
+    {
+      return null;
+    }
+
+    Properties baseline = new Properties();
+    InputStream in = new FileInputStream( baselinePath );
+    try
+    {
+      baseline.load( in );
+    }
+    finally
+    {
+      in.close();
+    }
+    return baseline;
+  }
+
+  private static void resetPeakHeap()
+  {
+    for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+    {
+      if ( pool.getType() == MemoryType.HEAP )
+      {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  private List< String > run() throws IOException
+  {
+    // Warm up the JIT on the smallest size so the first measured sizes are not interpreted, for long
+    // enough that compilation has settled before anything is timed.
+    long warmUpStart = System.nanoTime();
+    for ( int i = 0; ( i < 5 ) || ( ( System.nanoTime() - warmUpStart ) < WARM_UP_NANOS ); i++ )
+    {
+      runOnce( minCountryCount );
+    }
+
+    for ( int countryCount = minCountryCount; countryCount <= maxCountryCount; countryCount *= 2 )
+    {
+      Sample sample = runSize( countryCount );
+      samples.add( sample );
+      printSample( sample );
+      if ( sample.nanosByPhase.get( TOTAL ) > maxRunNanos )
+      {
+        System.out.println( "Stopping, a single run exceeded the run limit." );
+        break;
+      }
+    }
+
+    System.out.println();
+    for ( String phase : phases )
+    {
+      System.out.println( String.format( "%-28s exponent %.2f", phase, fitExponent( phase ) ) );
+    }
+    System.out.println();
+
+    if ( record )
+    {
+      writeBaseline();
+      System.out.println( "Recorded baseline to " + baselinePath );
+      return Lists.of();
+    }
+
+    Properties baseline = readBaseline();
+    if ( baseline == null )
+    {
+      System.out.println( "No baseline at " + baselinePath + ", run with --record to create one." );
+      return Lists.of();
+    }
+    return checkAgainst( baseline );
+  }
+
+  private Map< String, Long > runOnce( int countryCount )
+  {
+    final Map< String, Long > nanosByPhase = new LinkedHashMap< String, Long >();
+    GeneratorConfig config = new GeneratorConfig( countryCount );
+    config.countryMode = countryMode;
+    config.printLayouts = false;
+    config.listener = new GenerationListener()
+    {
+      @Override
+      public void phaseCompleted( String phase, long elapsedNanos )
+      {
+        nanosByPhase.put( phase, elapsedNanos );
+      }
+    };
+
+    // Each size gets its own fixed seed so that timings are compared on identical worlds.
+    long start = System.nanoTime();
+    RandomWorldGenerator.generate( config, seed + countryCount );
+    nanosByPhase.put( TOTAL, System.nanoTime() - start );
+    return nanosByPhase;
+  }
+
+  private Sample runSize( int countryCount )
+  {
+    Sample sample = new Sample();
+    sample.countryCount = countryCount;
+    for ( int i = 0; i < repeats; i++ )
+    {
+      System.gc();
+      resetPeakHeap();
+      long gcMillis = collectGcMillis();
+
+      Map< String, Long > nanosByPhase = runOnce( countryCount );
+
+      sample.gcMillis = Math.max( sample.gcMillis, collectGcMillis() - gcMillis );
+      sample.peakHeapBytes = Math.max( sample.peakHeapBytes, collectPeakHeapBytes() );
+      for ( Map.Entry< String, Long > entry : nanosByPhase.entrySet() )
+      {
+        phases.add( entry.getKey() );
+        Long fastest = sample.nanosByPhase.get( entry.getKey() );
+        if ( ( fastest == null ) || ( entry.getValue() < fastest ) )
+        {
+          sample.nanosByPhase.put( entry.getKey(), entry.getValue() );
+        }
+      }
+
+      if ( nanosByPhase.get( TOTAL ) > maxRunNanos )
+      {
+        break;
+      }
+    }
+    return sample;
+  }
+
+  private void writeBaseline() throws IOException
+  {
+    Properties baseline = new Properties();
+    baseline.setProperty( "countryMode", countryMode.name() );
+    baseline.setProperty( "maxCountryCount", Integer.toString( collectReachedCountryCount() ) );
+    for ( String phase : phases )
+    {
+      double exponent = fitExponent( phase );
+      if ( !Double.isNaN( exponent ) )
+      {
+        baseline.setProperty( "phase." + phase + ".exponent", Double.toString( exponent ) );
+      }
+    }
+    for ( Sample sample : samples )
+    {
+      for ( Map.Entry< String, Long > entry : sample.nanosByPhase.entrySet() )
+      {
+        baseline.setProperty( "phase." + entry.getKey() + ".nanos." + sample.countryCount,
+            Long.toString( entry.getValue() ) );
+      }
+      baseline.setProperty( "peakHeapBytes." + sample.countryCount,
+          Long.toString( sample.peakHeapBytes ) );
+      baseline.setProperty( "gcMillis." + sample.countryCount, Long.toString( sample.gcMillis ) );
+    }
+
+    OutputStream out = new FileOutputStream( baselinePath );
+    try
+    {
+      baseline.store( out, "Generator scaling baseline" );
+    }
+    finally
+    {
+      out.close();
+    }
+  }
+}
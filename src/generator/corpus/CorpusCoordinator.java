@@ -0,0 +1,462 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.corpus;
+
+import generator.CountryMode;
+import generator.model.WorldFingerprint;
+import generator.util.Lists;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a corpus of worlds over a range of seeds by splitting the range into shards, running a
+ * {@link CorpusWorker} process per shard and merging the shard files.
+ * <p>
+ * Up to <code>--workers</code> shards run at a time, each through the {@link WorkerLauncher}, and
+ * a shard whose worker fails or runs past <code>--worker-timeout</code> seconds is relaunched
+ * until it has used up its attempts. Shard files left by an earlier run are reused when their
+ * header shows they were generated with the same settings, so a failed build can be resumed, and
+ * regenerated otherwise. Once every shard exists they are merged, in seed order, into
+ * <code>corpus.txt</code> along with <code>corpus.idx</code>, which lists the seed, byte offset,
+ * byte length and exact fingerprint of every world in the corpus.
+ * <p>
+ * Duplicate worlds are dropped using a {@link FingerprintIndex}. Workers skip duplicates within
+ * their shard and of the index of earlier corpora given by <code>--fingerprints</code>, and the
+ * merge skips duplicates across the shards being merged. The merged worlds together with that
+ * index are saved to <code>corpus.fingerprints</code>, which can be given to the next corpus.
+ * Workers are never given the output directory's own index, since it holds the worlds of the
+ * shards being rebuilt. Near duplicates are also skipped when the
+ * <code>--skip-near-duplicates</code> flag is given.
+ */
+public class CorpusCoordinator
+{
+  public static void main( String[] args ) throws IOException, InterruptedException
+  {
+    CorpusCoordinator coordinator = new CorpusCoordinator( new LocalProcessLauncher() );
+    for ( int i = 0; i < args.length; i++ )
+    {
+      String arg = args[i];
+      if ( arg.equals( "--skip-near-duplicates" ) )
+      {
+        coordinator.skipNearDuplicates = true;
+        continue;
+      }
+      if ( ( i + 1 ) >= args.length )
+      {
+        throw new IllegalArgumentException( "Missing value for " + arg );
+      }
+      String value = args[++i];
+      if ( arg.equals( "--output" ) )
+      {
+        coordinator.outputDirectory = new File( value );
+      }
+      else if ( arg.equals( "--countries" ) )
+      {
+        coordinator.goalCountryCount = Integer.parseInt( value );
+      }
+      else if ( arg.equals( "--mode" ) )
+      {
+        coordinator.countryMode = CountryMode.valueOf( value );
+      }
+      else if ( arg.equals( "--first-seed" ) )
+      {
+        coordinator.firstSeed = Long.parseLong( value );
+      }
+      else if ( arg.equals( "--seeds" ) )
+      {
+        coordinator.seedCount = Long.parseLong( value );
+      }
+      else if ( arg.equals( "--shard-size" ) )
+      {
+        coordinator.shardSize = Integer.parseInt( value );
+      }
+      else if ( arg.equals( "--workers" ) )
+      {
+        coordinator.workerCount = Integer.parseInt( value );
+      }
+      else if ( arg.equals( "--attempts" ) )
+      {
+        coordinator.maxAttempts = Integer.parseInt( value );
+      }
+      else if ( arg.equals( "--worker-timeout" ) )
+      {
+        coordinator.workerTimeoutSeconds = Long.parseLong( value );
+      }
+      else if ( arg.equals( "--fingerprints" ) )
+      {
+        coordinator.fingerprintFile = new File( value );
+      }
+      else
+      {
+        throw new IllegalArgumentException( "Unknown argument " + arg );
+      }
+    }
+
+    if ( !coordinator.run() )
+    {
+      System.exit( 1 );
+    }
+  }
+
+  public CountryMode countryMode = CountryMode.GRID_MERGE;
+  /**
+   * The fingerprint index of earlier corpora whose worlds are left out of this one, may be null.
+   * It is only read, and must not be this corpus's own <code>corpus.fingerprints</code>.
+   */
+  public File fingerprintFile;
+  private final FingerprintIndex fingerprints = new FingerprintIndex();
+  public long firstSeed;
+  public int goalCountryCount = 55;
+  private final WorkerLauncher launcher;
+  public int maxAttempts = 3;
+  private long mergeSkippedCount;
+  public File outputDirectory = new File( "corpus" );
+  public long seedCount = 1000;
+  public int shardSize = 100;
+  public boolean skipNearDuplicates;
+  public int workerCount = Runtime.getRuntime().availableProcessors();
+  private long workerSkippedCount;
+  /**
+   * How long a worker may run before it is killed and its attempt counted as failed.
+   */
+  public long workerTimeoutSeconds = 1800;
+  private long writtenCount;
+
+  public CorpusCoordinator( WorkerLauncher launcher )
+  {
+    this.launcher = launcher;
+  }
+
+  private static class Shard
+  {
+    int attempts;
+    File file;
+    long firstSeed;
+    String header;
+    int index;
+    int seedCount;
+    long workerNanos;
+  }
+
+  private List< Shard > collectShards( File shardDirectory )
+  {
+    List< Shard > shards = Lists.of();
+    for ( long offset = 0; offset < seedCount; offset += shardSize )
+    {
+      Shard shard = new Shard();
+      shard.index = shards.size();
+      shard.firstSeed = firstSeed + offset;
+      shard.seedCount = ( int ) Math.min( shardSize, seedCount - offset );
+      shard.file = new File( shardDirectory, String.format( "shard-%05d.txt", shard.index ) );
+      shard.header = CorpusWorker.formatShardHeader( goalCountryCount, countryMode,
+          shard.firstSeed, shard.seedCount, skipNearDuplicates,
+          fingerprintFile != null ? fingerprintFile.getPath() : null );
+      shards.add( shard );
+    }
+    return shards;
+  }
+
+  /**
+   * Appends every world in the shard file that is not a duplicate to the corpus and its index,
+   * returning the new length of the corpus. The number of duplicates the worker left out is read
+   * from the shard's last line.
+   */
+  private long mergeShard( Shard shard, OutputStream corpus, PrintStream index, long corpusLength )
+      throws IOException
+  {
+    BufferedReader reader = new BufferedReader( new InputStreamReader(
+        new FileInputStream( shard.file ), "US-ASCII" ) );
+    try
+    {
+      String[] header = null;
+      StringBuilder world = new StringBuilder();
+      String line;
+      while ( ( line = reader.readLine() ) != null )
+      {
+        if ( line.startsWith( CorpusWorker.SHARD ) )
+        {
+          continue;
+        }
+        if ( line.startsWith( CorpusWorker.SKIPPED ) )
+        {
+          workerSkippedCount += Long.parseLong( line.substring( CorpusWorker.SKIPPED.length() ) );
+          continue;
+        }
+        if ( line.startsWith( CorpusWorker.WORLD ) )
+        {
+          header = line.split( " " );
+          world.setLength( 0 );
+        }
+        world.append( line ).append( '\n' );
+        if ( !line.equals( CorpusWorker.END ) )
+        {
+          continue;
+        }
+
+        WorldFingerprint fingerprint = new WorldFingerprint(
+            Long.parseUnsignedLong( header[2], 16 ), Long.parseUnsignedLong( header[3], 16 ) );
+        FingerprintIndex.Match match = fingerprints.add( fingerprint );
+        if ( ( match == FingerprintIndex.Match.DUPLICATE )
+            || ( skipNearDuplicates && ( match == FingerprintIndex.Match.NEAR_DUPLICATE ) ) )
+        {
+          mergeSkippedCount++;
+          continue;
+        }
+
+        byte[] bytes = world.toString().getBytes( "US-ASCII" );
+        corpus.write( bytes );
+        index.println( header[1] + " " + corpusLength + " " + bytes.length + " " + header[2] );
+        corpusLength += bytes.length;
+        writtenCount++;
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+    return corpusLength;
+  }
+
+  private void mergeShards( List< Shard > shards ) throws IOException
+  {
+    OutputStream corpus = new BufferedOutputStream( new FileOutputStream(
+        new File( outputDirectory, "corpus.txt" ) ) );
+    PrintStream index = new PrintStream( new BufferedOutputStream( new FileOutputStream(
+        new File( outputDirectory, "corpus.idx" ) ) ), false, "US-ASCII" );
+    try
+    {
+      long corpusLength = 0;
+      for ( Shard shard : shards )
+      {
+        corpusLength = mergeShard( shard, corpus, index, corpusLength );
+      }
+    }
+    finally
+    {
+      corpus.close();
+      index.close();
+    }
+    if ( index.checkError() )
+    {
+      throw new IOException( "Failed to write the corpus index" );
+    }
+  }
+
+  /**
+   * Generates and merges every shard, returning false if any shard could not be generated.
+   */
+  public boolean run() throws IOException, InterruptedException
+  {
+    File ownFingerprintFile = new File( outputDirectory, "corpus.fingerprints" );
+    if ( fingerprintFile != null )
+    {
+      if ( fingerprintFile.getCanonicalFile().equals( ownFingerprintFile.getCanonicalFile() ) )
+      {
+        throw new IllegalArgumentException( "The fingerprint index " + fingerprintFile
+            + " belongs to this corpus, only the indexes of earlier corpora can be given" );
+      }
+      if ( !fingerprintFile.isFile() )
+      {
+        throw new IllegalArgumentException( "Missing fingerprint index " + fingerprintFile );
+      }
+    }
+
+    final File shardDirectory = new File( outputDirectory, "shards" );
+    if ( !shardDirectory.isDirectory() && !shardDirectory.mkdirs() )
+    {
+      throw new IOException( "Failed to create " + shardDirectory );
+    }
+
+    List< Shard > shards = collectShards( shardDirectory );
+    long start = System.nanoTime();
+
+    ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, workerCount ) );
+    List< Future< Boolean > > futures = Lists.of();
+    try
+    {
+      for ( final Shard shard : shards )
+      {
+        futures.add( executor.submit( new Callable< Boolean >()
+        {
+          @Override
+          public Boolean call() throws Exception
+          {
+            return runShard( shard, shardDirectory );
+          }
+        } ) );
+      }
+
+      List< Shard > failedShards = Lists.of();
+      for ( int i = 0; i < shards.size(); i++ )
+      {
+        boolean succeeded;
+        try
+        {
+          succeeded = futures.get( i ).get();
+        }
+        catch ( ExecutionException e )
+        {
+          System.out.println( "Shard " + i + " failed: " + e.getCause() );
+          succeeded = false;
+        }
+        if ( !succeeded )
+        {
+          failedShards.add( shards.get( i ) );
+        }
+      }
+
+      if ( !failedShards.isEmpty() )
+      {
+        for ( Shard shard : failedShards )
+        {
+          System.out.println( "Shard " + shard.index + " (seeds " + shard.firstSeed + " to "
+              + ( ( shard.firstSeed + shard.seedCount ) - 1 ) + ") failed after "
+              + shard.attempts + " attempts, see its log in " + shardDirectory );
+        }
+        return false;
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    long generatedNanos = System.nanoTime() - start;
+    // Workers already checked the shards against the earlier corpora, so the merge only checks them
+    // against each other. The earlier hashes are added afterwards so the saved index covers them.
+    mergeShards( shards );
+    if ( fingerprintFile != null )
+    {
+      fingerprints.load( fingerprintFile );
+    }
+    fingerprints.save( ownFingerprintFile );
+    long totalNanos = System.nanoTime() - start;
+
+    long workerNanos = 0;
+    int retries = 0;
+    for ( Shard shard : shards )
+    {
+      workerNanos += shard.workerNanos;
+      retries += Math.max( 0, shard.attempts - 1 );
+    }
+    System.out.println( String.format( "Wrote %d of %d worlds in %d shards with %d retries, "
+        + "skipped %d duplicates in workers and %d at merge", writtenCount, seedCount,
+        shards.size(), retries, workerSkippedCount, mergeSkippedCount ) );
+    System.out.println( String.format( "Generation %.1f s, merge %.1f s, %.1f worlds/s overall, "
+        + "%.1f worlds/s per worker", generatedNanos / 1e9, ( totalNanos - generatedNanos ) / 1e9,
+        seedCount / ( totalNanos / 1e9 ), workerNanos == 0 ? 0
+            : seedCount / ( workerNanos / 1e9 ) ) );
+    return true;
+  }
+
+  private static String readFirstLine( File file ) throws IOException
+  {
+    BufferedReader reader = new BufferedReader( new InputStreamReader(
+        new FileInputStream( file ), "US-ASCII" ) );
+    try
+    {
+      return reader.readLine();
+    }
+    finally
+    {
+      reader.close();
+    }
+  }
+
+  private boolean runShard( Shard shard, File shardDirectory ) throws IOException,
+      InterruptedException
+  {
+    if ( shard.file.isFile() )
+    {
+      if ( shard.header.equals( readFirstLine( shard.file ) ) )
+      {
+        return true;
+      }
+      System.out.println( "Regenerating shard " + shard.index + ", it was generated with "
+          + "different settings" );
+      if ( !shard.file.delete() )
+      {
+        throw new IOException( "Failed to delete " + shard.file );
+      }
+    }
+
+    List< String > workerArguments = Lists.of();
+    workerArguments.add( shard.file.getPath() );
+    workerArguments.add( Integer.toString( goalCountryCount ) );
+    workerArguments.add( countryMode.name() );
+    workerArguments.add( Long.toString( shard.firstSeed ) );
+    workerArguments.add( Integer.toString( shard.seedCount ) );
+    workerArguments.add( Boolean.toString( skipNearDuplicates ) );
+    if ( fingerprintFile != null )
+    {
+      workerArguments.add( fingerprintFile.getPath() );
+    }
+    String logPath = new File( shardDirectory, String.format( "shard-%05d.log", shard.index ) )
+        .getPath();
+
+    while ( shard.attempts < maxAttempts )
+    {
+      shard.attempts++;
+      long start = System.nanoTime();
+      Process process = launcher.launch( workerArguments, logPath );
+      try
+      {
+        // A hung worker would otherwise hold its slot forever, so it counts as a failed attempt.
+        if ( !process.waitFor( workerTimeoutSeconds, TimeUnit.SECONDS ) )
+        {
+          process.destroyForcibly().waitFor();
+          shard.workerNanos += System.nanoTime() - start;
+          System.out.println( "Shard " + shard.index + " attempt " + shard.attempts
+              + " timed out after " + workerTimeoutSeconds + " s" );
+          continue;
+        }
+        int exitCode = process.exitValue();
+        shard.workerNanos += System.nanoTime() - start;
+        if ( ( exitCode == 0 ) && shard.file.isFile() )
+        {
+          return true;
+        }
+        System.out.println( "Shard " + shard.index + " attempt " + shard.attempts
+            + " exited with " + exitCode );
+      }
+      finally
+      {
+        process.destroy();
+      }
+    }
+    return false;
+  }
+}
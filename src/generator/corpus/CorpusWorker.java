@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.corpus;
+
+import generator.CountryMode;
+import generator.GeneratorConfig;
+import generator.RandomWorldGenerator;
+import generator.model.World;
+import generator.model.WorldFingerprint;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Generates the worlds for one shard of a corpus, one per seed, and writes them to a shard file.
+ * <p>
+ * The shard starts with a header line, as formatted by {@link #formatShardHeader}, recording the
+ * settings it was generated with, so that a coordinator only reuses shards that match its own
+ * settings. Each world is then written as a
+ * <code>world &lt;seed&gt; &lt;exact&gt; &lt;coarse&gt;</code> line holding its seed and
+ * hexadecimal fingerprints, its setup as printed by {@link World#printSetup(PrintStream)} and an
+ * <code>end</code> line. The shard ends with a <code>skipped &lt;count&gt;</code> line giving the
+ * number of duplicate worlds left out. The shard is written to a temporary file and only renamed
+ * into place once complete, so an existing shard file is always whole.
+ * <p>
+ * Worlds whose fingerprint matches one already generated in the shard, or one in the optional
+ * fingerprint index of an earlier corpus, are skipped before they are written. Near duplicates are
+ * only skipped when asked to.
+ * <p>
+ * Usage: <code>CorpusWorker shardPath goalCountryCount countryMode firstSeed seedCount
+ * skipNearDuplicates [fingerprintIndexPath]</code>
+ */
+public class CorpusWorker
+{
+  public static final String END = "end";
+  public static final String SHARD = "shard ";
+  public static final String SKIPPED = "skipped ";
+  public static final String WORLD = "world ";
+
+  /**
+   * Returns the header line of a shard generated with the given settings, the fingerprint index
+   * path being null when there is none.
+   */
+  public static String formatShardHeader( int goalCountryCount, CountryMode countryMode,
+      long firstSeed, int seedCount, boolean skipNearDuplicates, String fingerprintIndexPath )
+  {
+    String header = SHARD + goalCountryCount + " " + countryMode.name() + " " + firstSeed + " "
+        + seedCount + " " + skipNearDuplicates;
+    return fingerprintIndexPath != null ? header + " " + fingerprintIndexPath : header;
+  }
+
+  public static void main( String[] args ) throws IOException
+  {
+    if ( ( args.length != 6 ) && ( args.length != 7 ) )
+    {
+      System.err.println( "Usage: CorpusWorker shardPath goalCountryCount countryMode firstSeed "
+          + "seedCount skipNearDuplicates [fingerprintIndexPath]" );
+      System.exit( 2 );
+    }
+    File shardFile = new File( args[0] );
+    GeneratorConfig config = new GeneratorConfig( Integer.parseInt( args[1] ) );
+    config.countryMode = CountryMode.valueOf( args[2] );
+    config.printLayouts = false;
+    long firstSeed = Long.parseLong( args[3] );
+    int seedCount = Integer.parseInt( args[4] );
+
+    boolean skipNearDuplicates = Boolean.parseBoolean( args[5] );
+    String fingerprintIndexPath = args.length == 7 ? args[6] : null;
+
+    FingerprintIndex fingerprints = new FingerprintIndex();
+    if ( fingerprintIndexPath != null )
+    {
+      fingerprints.load( new File( fingerprintIndexPath ) );
+    }
+
+    int skippedCount = 0;
+    File temporaryFile = new File( shardFile.getPath() + ".tmp" );
+    PrintStream out = new PrintStream( new BufferedOutputStream(
+        new FileOutputStream( temporaryFile ) ), false, "US-ASCII" );
+    try
+    {
+      out.println( formatShardHeader( config.goalCountryCount, config.countryMode, firstSeed,
+          seedCount, skipNearDuplicates, fingerprintIndexPath ) );
+      for ( long seed = firstSeed; seed < ( firstSeed + seedCount ); seed++ )
+      {
+        World world = RandomWorldGenerator.generate( config, seed );
+        WorldFingerprint fingerprint = world.getFingerprint();
+        FingerprintIndex.Match match = fingerprints.add( fingerprint );
+        if ( ( match == FingerprintIndex.Match.DUPLICATE )
+            || ( skipNearDuplicates && ( match == FingerprintIndex.Match.NEAR_DUPLICATE ) ) )
+        {
+          skippedCount++;
+          continue;
+        }
+
+        out.println( WORLD + seed + " " + Long.toHexString( fingerprint.exact ) + " "
+            + Long.toHexString( fingerprint.coarse ) );
+        world.printSetup( out );
+        out.println( END );
+      }
+      out.println( SKIPPED + skippedCount );
+    }
+    finally
+    {
+      out.close();
+    }
+    if ( out.checkError() )
+    {
+      throw new IOException( "Failed to write " + temporaryFile );
+    }
+    if ( !temporaryFile.renameTo( shardFile ) )
+    {
+      throw new IOException( "Failed to rename " + temporaryFile + " to " + shardFile );
+    }
+    System.out.println( "Wrote " + ( seedCount - skippedCount ) + " worlds, skipped "
+        + skippedCount + " duplicates" );
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.corpus;
+
+import generator.model.WorldFingerprint;
+import generator.util.Sets;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Set;
+
+/**
+ * The fingerprints of every world in a corpus, for detecting duplicate and near duplicate worlds
+ * in constant time before they are written.
+ * <p>
+ * Saved indexes are text files with one <code>exact</code> or <code>coarse</code> line per hash.
+ */
+public class FingerprintIndex
+{
+  public enum Match
+  {
+    DUPLICATE, NEAR_DUPLICATE, NONE
+  }
+
+  private final Set< Long > coarseHashes = Sets.of();
+  private final Set< Long > exactHashes = Sets.of();
+
+  /**
+   * Records the fingerprint and returns how closely it matched one already in the index.
+   * <p>
+   * Worlds that are skipped for matching should still be added, so the index stays a superset of
+   * the corpus.
+   */
+  public synchronized Match add( WorldFingerprint fingerprint )
+  {
+    boolean newExact = exactHashes.add( fingerprint.exact );
+    boolean newCoarse = coarseHashes.add( fingerprint.coarse );
+    if ( !newExact )
+    {
+      return Match.DUPLICATE;
+    }
+    return newCoarse ? Match.NONE : Match.NEAR_DUPLICATE;
+  }
+
+  public synchronized void load( File file ) throws IOException
+  {
+    BufferedReader reader = new BufferedReader( new InputStreamReader(
+        new FileInputStream( file ), "US-ASCII" ) );
+    try
+    {
+      String line;
+      while ( ( line = reader.readLine() ) != null )
+      {
+        String[] parts = line.split( " " );
+        if ( parts.length != 2 )
+        {
+          continue;
+        }
+        long hash = Long.parseUnsignedLong( parts[1], 16 );
+        if ( parts[0].equals( "exact" ) )
+        {
+          exactHashes.add( hash );
+        }
+        else if ( parts[0].equals( "coarse" ) )
+        {
+          coarseHashes.add( hash );
+        }
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+  }
+
+  public synchronized void save( File file ) throws IOException
+  {
+    PrintStream out = new PrintStream( new BufferedOutputStream( new FileOutputStream( file ) ),
+        false, "US-ASCII" );
+    try
+    {
+      for ( long hash : exactHashes )
+      {
+        out.println( "exact " + Long.toHexString( hash ) );
+      }
+      for ( long hash : coarseHashes )
+      {
+        out.println( "coarse " + Long.toHexString( hash ) );
+      }
+    }
+    finally
+    {
+      out.close();
+    }
+    if ( out.checkError() )
+    {
+      throw new IOException( "Failed to write " + file );
+    }
+  }
+
+  public synchronized int size()
+  {
+    return exactHashes.size();
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.corpus;
+
+import generator.util.Lists;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Launches workers as child processes of the coordinator, using the same java installation and
+ * class path.
+ */
+public class LocalProcessLauncher implements WorkerLauncher
+{
+  @Override
+  public Process launch( List< String > workerArguments, String logPath ) throws IOException
+  {
+    List< String > command = Lists.of();
+    command.add( System.getProperty( "java.home" ) + File.separator + "bin" + File.separator
+        + "java" );
+    command.add( "-cp" );
+    command.add( System.getProperty( "java.class.path" ) );
+    command.add( CorpusWorker.class.getName() );
+    command.addAll( workerArguments );
+
+    ProcessBuilder builder = new ProcessBuilder( command );
+    builder.redirectErrorStream( true );
+    builder.redirectOutput( ProcessBuilder.Redirect.appendTo( new File( logPath ) ) );
+    return builder.start();
+  }
+}
@@ -24,6 +24,8 @@ import generator.util.Lists;
 import generator.util.Maps;
 import generator.util.Sets;
 
+import java.io.PrintStream;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -34,8 +36,17 @@ public class World
   public Map< Integer, Country > countriesById = Maps.of();
   public List< Edge > edges = Lists.of();
   public int maxRounds;
-  public Set< Country > startingCountries = Sets.of();
-  public Set< Country > wastelandCountries = Sets.of();
+  /**
+   * The ids of the starting countries.
+   */
+  public BitSet startingCountries = new BitSet();
+  /**
+   * The ids of the wasteland countries.
+   */
+  public BitSet wastelandCountries = new BitSet();
+  private WorldAnalysis analysis;
+  private WorldFingerprint fingerprint;
+  private WorldView view;
 
   public Set< Country > collectNeighborCountries( Continent continent )
   {
@@ -64,63 +75,112 @@ public class World
     return neighborCountries;
   }
 
+  /**
+   * Returns the distance and border analysis of the world, computing it on first use.
+   * <p>
+   * Like {@link #getView()} this must only be called once the world is finished.
+   */
+  public synchronized WorldAnalysis getAnalysis()
+  {
+    if ( analysis == null )
+    {
+      analysis = new WorldAnalysis( getView() );
+    }
+    return analysis;
+  }
+
+  /**
+   * Returns the structural fingerprint of the world, computing it on first use.
+   * <p>
+   * Like {@link #getView()} this must only be called once the world is finished.
+   */
+  public synchronized WorldFingerprint getFingerprint()
+  {
+    if ( fingerprint == null )
+    {
+      fingerprint = new WorldFingerprint( getView() );
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Returns the read only view of the world, building it on first use.
+   * <p>
+   * The view is a snapshot, so this must only be called once the world is finished.
+   */
+  public synchronized WorldView getView()
+  {
+    if ( view == null )
+    {
+      view = new WorldView( this );
+    }
+    return view;
+  }
+
   public void printSetup()
   {
-    System.out.println( "settings max_rounds " + maxRounds );
-    System.out.println( "" );
+    printSetup( System.out );
+  }
+
+  public void printSetup( PrintStream out )
+  {
+    out.println( "settings max_rounds " + maxRounds );
+    out.println( "" );
 
-    System.out.print( "setup_map super_regions" );
+    out.print( "setup_map super_regions" );
     for ( Continent continent : continents )
     {
-      System.out.print( " " + continent.id + " " + continent.bonus );
+      out.print( " " + continent.id + " " + continent.bonus );
     }
-    System.out.println( "" );
-    System.out.println( "" );
+    out.println( "" );
+    out.println( "" );
 
-    System.out.print( "setup_map regions" );
+    out.print( "setup_map regions" );
     for ( Continent continent : continents )
     {
       for ( Country country : continent.countries )
       {
-        System.out.print( " " + country.id + " " + continent.id );
+        out.print( " " + country.id + " " + continent.id );
       }
     }
-    System.out.println( "" );
-    System.out.println( "" );
+    out.println( "" );
+    out.println( "" );
 
-    System.out.print( "setup_map neighbors" );
+    out.print( "setup_map neighbors" );
     for ( Continent continent : continents )
     {
       for ( Country country : continent.countries )
       {
-        System.out.print( " " + country.id );
+        out.print( " " + country.id );
         Set< Country > neighborCountries = collectNeighborCountries( country );
 
         String separator = " ";
         for ( Country neighborCountry : neighborCountries )
         {
-          System.out.print( separator + neighborCountry.id );
+          out.print( separator + neighborCountry.id );
           separator = ",";
         }
       }
     }
-    System.out.println( "" );
-    System.out.println( "" );
+    out.println( "" );
+    out.println( "" );
 
-    System.out.print( "setup_map wastelands" );
-    for ( Country wastelandCountry : wastelandCountries )
+    out.print( "setup_map wastelands" );
+    for ( int id = wastelandCountries.nextSetBit( 0 ); id >= 0;
+        id = wastelandCountries.nextSetBit( id + 1 ) )
     {
-      System.out.print( " " + wastelandCountry.id );
+      out.print( " " + id );
     }
-    System.out.println( "" );
-    System.out.println( "" );
+    out.println( "" );
+    out.println( "" );
 
-    System.out.print( "settings starting_regions" );
-    for ( Country startingCountry : startingCountries )
+    out.print( "settings starting_regions" );
+    for ( int id = startingCountries.nextSetBit( 0 ); id >= 0;
+        id = startingCountries.nextSetBit( id + 1 ) )
     {
-      System.out.print( " " + startingCountry.id );
+      out.print( " " + id );
     }
-    System.out.println( "" );
-    System.out.println( "" );
+    out.println( "" );
+    out.println( "" );
   }
 }
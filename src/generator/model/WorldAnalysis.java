@@ -0,0 +1,263 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.model;
+
+import generator.util.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Hop distances between every pair of countries plus the border countries and entry edges of every
+ * continent, precomputed from a {@link WorldView}.
+ * <p>
+ * Distances are stored as one byte per pair in a flat row major matrix. A breadth first search is
+ * run from every country, with the sources split across one worker per processor. Like the view it
+ * is built from, an analysis is immutable once constructed and safe to share between threads.
+ */
+public class WorldAnalysis
+{
+  /**
+   * Distances that do not fit in a byte are stored as this value.
+   */
+  public static final int MAX_DISTANCE = Byte.MAX_VALUE;
+  public static final int UNREACHABLE = -1;
+
+  /**
+   * The largest array most virtual machines will allocate, which limits the distance matrix to
+   * about 46,000 countries.
+   */
+  private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+  private final int[] borderCountries;
+  private final int[] borderCountryOffsets;
+  private final int countryCount;
+  private final byte[] distances;
+  private final int[] entryEdgeOffsets;
+  private final int[] entryEdgeSources;
+  private final int[] entryEdgeTargets;
+
+  public WorldAnalysis( WorldView view )
+  {
+    countryCount = view.getCountryCount();
+    long distanceCount = ( long ) countryCount * countryCount;
+    if ( distanceCount > MAX_ARRAY_LENGTH )
+    {
+      throw new IllegalArgumentException( "Cannot store the distances of " + countryCount
+          + " countries, the matrix would need " + distanceCount + " entries but at most "
+          + MAX_ARRAY_LENGTH + " fit in an array" );
+    }
+    distances = new byte[( int ) distanceCount];
+    calculateDistances( view );
+
+    int continentCount = view.getContinentCount();
+    borderCountryOffsets = new int[continentCount + 1];
+    entryEdgeOffsets = new int[continentCount + 1];
+
+    int borderCountryCount = 0;
+    int entryEdgeCount = 0;
+    for ( int country = 0; country < countryCount; country++ )
+    {
+      int entryCount = countEntryEdges( view, country );
+      if ( entryCount > 0 )
+      {
+        borderCountryCount++;
+        entryEdgeCount += entryCount;
+      }
+    }
+    borderCountries = new int[borderCountryCount];
+    entryEdgeSources = new int[entryEdgeCount];
+    entryEdgeTargets = new int[entryEdgeCount];
+
+    borderCountryCount = 0;
+    entryEdgeCount = 0;
+    for ( int continent = 0; continent < continentCount; continent++ )
+    {
+      borderCountryOffsets[continent] = borderCountryCount;
+      entryEdgeOffsets[continent] = entryEdgeCount;
+      for ( int i = 0; i < view.getContinentCountryCount( continent ); i++ )
+      {
+        int country = view.getContinentCountry( continent, i );
+        boolean border = false;
+        for ( int j = 0; j < view.getNeighborCount( country ); j++ )
+        {
+          int neighbor = view.getNeighbor( country, j );
+          if ( view.getContinentIndex( neighbor ) != continent )
+          {
+            entryEdgeSources[entryEdgeCount] = neighbor;
+            entryEdgeTargets[entryEdgeCount] = country;
+            entryEdgeCount++;
+            border = true;
+          }
+        }
+        if ( border )
+        {
+          borderCountries[borderCountryCount] = country;
+          borderCountryCount++;
+        }
+      }
+    }
+    borderCountryOffsets[continentCount] = borderCountryCount;
+    entryEdgeOffsets[continentCount] = entryEdgeCount;
+  }
+
+  private static int countEntryEdges( WorldView view, int country )
+  {
+    int continent = view.getContinentIndex( country );
+    int count = 0;
+    for ( int i = 0; i < view.getNeighborCount( country ); i++ )
+    {
+      if ( view.getContinentIndex( view.getNeighbor( country, i ) ) != continent )
+      {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private void calculateDistances( final WorldView view )
+  {
+    final int workerCount = Math.max( 1,
+        Math.min( Runtime.getRuntime().availableProcessors(), countryCount ) );
+    ExecutorService executor = Executors.newFixedThreadPool( workerCount );
+    try
+    {
+      List< Future< ? > > futures = Lists.of();
+      for ( int w = 0; w < workerCount; w++ )
+      {
+        final int firstSource = w;
+        futures.add( executor.submit( new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            int[] queue = new int[countryCount];
+            for ( int source = firstSource; source < countryCount; source += workerCount )
+            {
+              searchFrom( view, source, queue );
+            }
+          }
+        } ) );
+      }
+      for ( Future< ? > future : futures )
+      {
+        future.get();
+      }
+    }
+    catch ( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( "Interrupted while calculating distances", e );
+    }
+    catch ( ExecutionException e )
+    {
+      throw new IllegalStateException( "Failed to calculate distances", e.getCause() );
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Fills in the distance matrix row of the source country. Each source only writes its own row so
+   * searches from different sources never touch the same bytes.
+   */
+  private void searchFrom( WorldView view, int source, int[] queue )
+  {
+    int rowStart = source * countryCount;
+    Arrays.fill( distances, rowStart, rowStart + countryCount, ( byte ) UNREACHABLE );
+    distances[rowStart + source] = 0;
+
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = source;
+    while ( head < tail )
+    {
+      int country = queue[head++];
+      int distance = Math.min( distances[rowStart + country] + 1, MAX_DISTANCE );
+      for ( int i = 0; i < view.getNeighborCount( country ); i++ )
+      {
+        int neighbor = view.getNeighbor( country, i );
+        if ( distances[rowStart + neighbor] == UNREACHABLE )
+        {
+          distances[rowStart + neighbor] = ( byte ) distance;
+          queue[tail++] = neighbor;
+        }
+      }
+    }
+  }
+
+  public int getBorderCountry( int continentIndex, int i )
+  {
+    return borderCountries[borderCountryOffsets[continentIndex] + i];
+  }
+
+  /**
+   * Returns the number of countries in the continent that neighbor a country outside of it.
+   */
+  public int getBorderCountryCount( int continentIndex )
+  {
+    return borderCountryOffsets[continentIndex + 1] - borderCountryOffsets[continentIndex];
+  }
+
+  public int getCountryCount()
+  {
+    return countryCount;
+  }
+
+  /**
+   * Returns the hop distance between two countries, {@link #MAX_DISTANCE} if it is at least that
+   * far or {@link #UNREACHABLE} if there is no path.
+   */
+  public int getDistance( int countryId, int otherCountryId )
+  {
+    return distances[( countryId * countryCount ) + otherCountryId];
+  }
+
+  /**
+   * Returns the number of edges that lead into the continent from a country outside of it.
+   */
+  public int getEntryEdgeCount( int continentIndex )
+  {
+    return entryEdgeOffsets[continentIndex + 1] - entryEdgeOffsets[continentIndex];
+  }
+
+  /**
+   * Returns the country outside of the continent that the entry edge starts from.
+   */
+  public int getEntryEdgeSource( int continentIndex, int i )
+  {
+    return entryEdgeSources[entryEdgeOffsets[continentIndex] + i];
+  }
+
+  /**
+   * Returns the border country inside of the continent that the entry edge leads to.
+   */
+  public int getEntryEdgeTarget( int continentIndex, int i )
+  {
+    return entryEdgeTargets[entryEdgeOffsets[continentIndex] + i];
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.model;
+
+import java.util.Arrays;
+
+/**
+ * Canonical structural hashes of a world's country graph, equal for worlds that are the same up
+ * to renumbering of their countries and continents.
+ * <p>
+ * Hashes are computed with Weisfeiler-Lehman refinement: every country starts with a label made
+ * from its degree and its continent's size and bonus, and each round replaces it with a hash of
+ * its own label and the sorted labels of its neighbors, each marked by whether the neighbor is in
+ * the same continent. The world's hash combines the sorted final labels. A round costs
+ * O(edges log degree), so the whole computation is near linear.
+ * <p>
+ * The {@link #exact} hash runs enough rounds to tell apart nearly all non isomorphic worlds of the
+ * generated sizes. The {@link #coarse} hash leaves out bonuses and stops after two rounds, so
+ * worlds that share it have the same continent sizes and local shapes everywhere and are near
+ * duplicates of each other. Like any hash, different worlds can collide, but with 64 bits that is
+ * negligible at corpus scale.
+ */
+public class WorldFingerprint
+{
+  private static final int COARSE_ROUNDS = 2;
+  private static final int EXACT_ROUNDS = 6;
+  private static final long OTHER_CONTINENT = 0x632be59bd9b4e019L;
+  private static final long SAME_CONTINENT = 0x9e3779b97f4a7c15L;
+
+  public final long coarse;
+  public final long exact;
+
+  public WorldFingerprint( WorldView view )
+  {
+    exact = hash( view, EXACT_ROUNDS, true );
+    coarse = hash( view, COARSE_ROUNDS, false );
+  }
+
+  public WorldFingerprint( long exact, long coarse )
+  {
+    this.exact = exact;
+    this.coarse = coarse;
+  }
+
+  private static long combine( long hash, long value )
+  {
+    return mix( ( hash * 31 ) + value );
+  }
+
+  private static long hash( WorldView view, int rounds, boolean includeBonuses )
+  {
+    int countryCount = view.getCountryCount();
+    long[] labels = new long[countryCount];
+    for ( int country = 0; country < countryCount; country++ )
+    {
+      int continent = view.getContinentIndex( country );
+      long label = combine( view.getNeighborCount( country ),
+          continent < 0 ? -1 : view.getContinentCountryCount( continent ) );
+      if ( includeBonuses && ( continent >= 0 ) )
+      {
+        label = combine( label, view.getContinentBonus( continent ) );
+      }
+      labels[country] = label;
+    }
+
+    long[] nextLabels = new long[countryCount];
+    long[] neighborLabels = new long[8];
+    for ( int round = 0; round < rounds; round++ )
+    {
+      for ( int country = 0; country < countryCount; country++ )
+      {
+        int neighborCount = view.getNeighborCount( country );
+        if ( neighborLabels.length < neighborCount )
+        {
+          neighborLabels = new long[neighborCount * 2];
+        }
+        int continent = view.getContinentIndex( country );
+        for ( int i = 0; i < neighborCount; i++ )
+        {
+          int neighbor = view.getNeighbor( country, i );
+          neighborLabels[i] = combine( labels[neighbor],
+              view.getContinentIndex( neighbor ) == continent ? SAME_CONTINENT : OTHER_CONTINENT );
+        }
+        Arrays.sort( neighborLabels, 0, neighborCount );
+
+        long label = labels[country];
+        for ( int i = 0; i < neighborCount; i++ )
+        {
+          label = combine( label, neighborLabels[i] );
+        }
+        nextLabels[country] = label;
+      }
+
+      long[] swap = labels;
+      labels = nextLabels;
+      nextLabels = swap;
+    }
+
+    Arrays.sort( labels );
+    long hash = combine( countryCount, view.getContinentCount() );
+    for ( long label : labels )
+    {
+      hash = combine( hash, label );
+    }
+    return hash;
+  }
+
+  /**
+   * The splitmix64 finalizer, which spreads every input bit over the whole output.
+   */
+  private static long mix( long value )
+  {
+    value = ( value ^ ( value >>> 30 ) ) * 0xbf58476d1ce4e5b9L;
+    value = ( value ^ ( value >>> 27 ) ) * 0x94d049bb133111ebL;
+    return value ^ ( value >>> 31 );
+  }
+}
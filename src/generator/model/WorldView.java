@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable, read only snapshot of a finished world.
+ * <p>
+ * Countries are addressed by their final id and continents by their index in the world's continent
+ * list. Adjacency is stored in compressed sparse row form (an offset array into one flat neighbor
+ * array, with each country's neighbors sorted) so that neighbor queries are O(degree) array scans
+ * instead of walks over the full edge list.
+ * <p>
+ * All state is held in final fields and never modified after construction, so a view can be
+ * shared between threads without locking. The world must not be modified while a view is being
+ * built from it.
+ */
+public class WorldView
+{
+  private final int[] continentBonuses;
+  private final int[] continentCountries;
+  private final int[] continentCountryOffsets;
+  private final int[] continentIds;
+  private final int[] continentIndexesByCountry;
+  private final int maxRounds;
+  private final int[] neighborOffsets;
+  private final int[] neighbors;
+  private final BitSet startingCountries;
+  private final BitSet wastelandCountries;
+
+  public WorldView( World world )
+  {
+    int countryCount = world.countriesById.size();
+    int continentCount = world.continents.size();
+
+    maxRounds = world.maxRounds;
+    continentIds = new int[continentCount];
+    continentBonuses = new int[continentCount];
+    continentCountryOffsets = new int[continentCount + 1];
+    continentCountries = new int[countryCount];
+    continentIndexesByCountry = new int[countryCount];
+    Arrays.fill( continentIndexesByCountry, -1 );
+
+    int continentCountryCount = 0;
+    for ( int i = 0; i < continentCount; i++ )
+    {
+      Continent continent = world.continents.get( i );
+      continentIds[i] = continent.id;
+      continentBonuses[i] = continent.bonus;
+      continentCountryOffsets[i] = continentCountryCount;
+      for ( Country country : continent.countries )
+      {
+        continentCountries[continentCountryCount] = country.id;
+        continentIndexesByCountry[country.id] = i;
+        continentCountryCount++;
+      }
+    }
+    continentCountryOffsets[continentCount] = continentCountryCount;
+
+    // Edges may still reference countries that were dropped along with a disconnected continent,
+    // those are skipped by checking that both ends are the country registered under their id.
+    int[] degrees = new int[countryCount];
+    for ( Edge edge : world.edges )
+    {
+      if ( isRegistered( world, edge.leftCountry ) && isRegistered( world, edge.rightCountry ) )
+      {
+        degrees[edge.leftCountry.id]++;
+        degrees[edge.rightCountry.id]++;
+      }
+    }
+
+    int[] edgeOffsets = new int[countryCount + 1];
+    for ( int i = 0; i < countryCount; i++ )
+    {
+      edgeOffsets[i + 1] = edgeOffsets[i] + degrees[i];
+    }
+    int[] edgeNeighbors = new int[edgeOffsets[countryCount]];
+    int[] fill = Arrays.copyOf( edgeOffsets, countryCount );
+    for ( Edge edge : world.edges )
+    {
+      if ( isRegistered( world, edge.leftCountry ) && isRegistered( world, edge.rightCountry ) )
+      {
+        edgeNeighbors[fill[edge.leftCountry.id]++] = edge.rightCountry.id;
+        edgeNeighbors[fill[edge.rightCountry.id]++] = edge.leftCountry.id;
+      }
+    }
+
+    // The edge list can hold the same border in both directions, so sort and compact each row.
+    neighborOffsets = new int[countryCount + 1];
+    int neighborCount = 0;
+    for ( int i = 0; i < countryCount; i++ )
+    {
+      int start = edgeOffsets[i];
+      int end = edgeOffsets[i + 1];
+      Arrays.sort( edgeNeighbors, start, end );
+      neighborOffsets[i] = neighborCount;
+      for ( int j = start; j < end; j++ )
+      {
+        if ( ( j == start ) || ( edgeNeighbors[j] != edgeNeighbors[j - 1] ) )
+        {
+          edgeNeighbors[neighborCount] = edgeNeighbors[j];
+          neighborCount++;
+        }
+      }
+    }
+    neighborOffsets[countryCount] = neighborCount;
+    neighbors = Arrays.copyOf( edgeNeighbors, neighborCount );
+
+    startingCountries = ( BitSet ) world.startingCountries.clone();
+    wastelandCountries = ( BitSet ) world.wastelandCountries.clone();
+  }
+
+  private static boolean isRegistered( World world, Country country )
+  {
+    return world.countriesById.get( country.id ) == country;
+  }
+
+  public int getContinentBonus( int continentIndex )
+  {
+    return continentBonuses[continentIndex];
+  }
+
+  public int getContinentCount()
+  {
+    return continentIds.length;
+  }
+
+  public int getContinentCountry( int continentIndex, int i )
+  {
+    return continentCountries[continentCountryOffsets[continentIndex] + i];
+  }
+
+  public int getContinentCountryCount( int continentIndex )
+  {
+    return continentCountryOffsets[continentIndex + 1] - continentCountryOffsets[continentIndex];
+  }
+
+  public int getContinentId( int continentIndex )
+  {
+    return continentIds[continentIndex];
+  }
+
+  /**
+   * Returns the index of the continent that contains the country, or -1 if it is in none.
+   */
+  public int getContinentIndex( int countryId )
+  {
+    return continentIndexesByCountry[countryId];
+  }
+
+  public int getCountryCount()
+  {
+    return continentIndexesByCountry.length;
+  }
+
+  public int getMaxRounds()
+  {
+    return maxRounds;
+  }
+
+  public int getNeighbor( int countryId, int i )
+  {
+    return neighbors[neighborOffsets[countryId] + i];
+  }
+
+  public int getNeighborCount( int countryId )
+  {
+    return neighborOffsets[countryId + 1] - neighborOffsets[countryId];
+  }
+
+  /**
+   * Returns a copy of the neighbor ids of the country, sorted ascending.
+   */
+  public int[] getNeighbors( int countryId )
+  {
+    return Arrays.copyOfRange( neighbors, neighborOffsets[countryId],
+        neighborOffsets[countryId + 1] );
+  }
+
+  /**
+   * Returns a copy of the starting countries as a set of country ids.
+   */
+  public BitSet getStartingCountries()
+  {
+    return ( BitSet ) startingCountries.clone();
+  }
+
+  /**
+   * Returns a copy of the wasteland countries as a set of country ids.
+   */
+  public BitSet getWastelandCountries()
+  {
+    return ( BitSet ) wastelandCountries.clone();
+  }
+
+  public boolean isNeighbor( int countryId, int otherCountryId )
+  {
+    return Arrays.binarySearch( neighbors, neighborOffsets[countryId],
+        neighborOffsets[countryId + 1], otherCountryId ) >= 0;
+  }
+
+  public boolean isStartingCountry( int countryId )
+  {
+    return startingCountries.get( countryId );
+  }
+
+  public boolean isWastelandCountry( int countryId )
+  {
+    return wastelandCountries.get( countryId );
+  }
+}
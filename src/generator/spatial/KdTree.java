@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.spatial;
+
+import java.util.List;
+
+/**
+ * A static two dimensional k-d tree for nearest point queries.
+ * <p>
+ * The tree is stored implicitly in a single array of point indexes: the median of each range is
+ * its node, with the lower half of the range to its left and the upper half to its right. Building
+ * partitions each level with a quickselect, so construction is O(n log n) and a nearest query is
+ * O(log n) for well spread points.
+ */
+public class KdTree
+{
+  private final int[] indexes;
+  private final double[] xs;
+  private final double[] ys;
+
+  public KdTree( List< Point > points )
+  {
+    int size = points.size();
+    indexes = new int[size];
+    xs = new double[size];
+    ys = new double[size];
+    for ( int i = 0; i < size; i++ )
+    {
+      indexes[i] = i;
+      xs[i] = points.get( i ).x;
+      ys[i] = points.get( i ).y;
+    }
+    build( 0, size, 0 );
+  }
+
+  private void build( int from, int to, int depth )
+  {
+    if ( ( to - from ) < 2 )
+    {
+      return;
+    }
+    int middle = ( from + to ) >>> 1;
+    select( from, to - 1, middle, ( depth & 1 ) == 0 ? xs : ys );
+    build( from, middle, depth + 1 );
+    build( middle + 1, to, depth + 1 );
+  }
+
+  /**
+   * Returns the index, in the list the tree was built from, of the point closest to the location.
+   */
+  public int nearest( double x, double y )
+  {
+    double[] best = { Double.POSITIVE_INFINITY, -1 };
+    search( 0, indexes.length, 0, x, y, best );
+    return ( int ) best[1];
+  }
+
+  private void search( int from, int to, int depth, double x, double y, double[] best )
+  {
+    if ( from >= to )
+    {
+      return;
+    }
+    int middle = ( from + to ) >>> 1;
+    int index = indexes[middle];
+    double dx = xs[index] - x;
+    double dy = ys[index] - y;
+    double distanceSquared = ( dx * dx ) + ( dy * dy );
+    if ( distanceSquared < best[0] )
+    {
+      best[0] = distanceSquared;
+      best[1] = index;
+    }
+
+    double split = ( depth & 1 ) == 0 ? dx : dy;
+    if ( split > 0 )
+    {
+      search( from, middle, depth + 1, x, y, best );
+      if ( ( split * split ) < best[0] )
+      {
+        search( middle + 1, to, depth + 1, x, y, best );
+      }
+    }
+    else
+    {
+      search( middle + 1, to, depth + 1, x, y, best );
+      if ( ( split * split ) < best[0] )
+      {
+        search( from, middle, depth + 1, x, y, best );
+      }
+    }
+  }
+
+  /**
+   * Partially orders the indexes between low and high, inclusive, so that the k-th one has the
+   * k-th smallest coordinate with no larger coordinate before it and no smaller one after it.
+   */
+  private void select( int low, int high, int k, double[] coordinates )
+  {
+    while ( low < high )
+    {
+      double pivot = coordinates[indexes[( low + high ) >>> 1]];
+      int i = low;
+      int j = high;
+      while ( i <= j )
+      {
+        while ( coordinates[indexes[i]] < pivot )
+        {
+          i++;
+        }
+        while ( coordinates[indexes[j]] > pivot )
+        {
+          j--;
+        }
+        if ( i <= j )
+        {
+          int swap = indexes[i];
+          indexes[i] = indexes[j];
+          indexes[j] = swap;
+          i++;
+          j--;
+        }
+      }
+      if ( k <= j )
+      {
+        high = j;
+      }
+      else if ( k >= i )
+      {
+        low = i;
+      }
+      else
+      {
+        return;
+      }
+    }
+  }
+}
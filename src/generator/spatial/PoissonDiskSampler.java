@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.spatial;
+
+import generator.util.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Scatters points over a rectangle so that no two are closer than a minimum distance, using
+ * Bridson's algorithm.
+ * <p>
+ * Accepted points are bucketed in a spatial hash grid with cells small enough to hold at most one
+ * point, so checking a candidate only looks at the few surrounding cells and sampling is linear in
+ * the number of points. Filling a rectangle this way yields about <code>0.69 / radius^2</code>
+ * points per unit of area.
+ */
+public class PoissonDiskSampler
+{
+  /**
+   * Roughly how many points a maximal sampling places per unit of area at a radius of one.
+   */
+  public static final double DENSITY = 0.69;
+  private static final int CANDIDATES_PER_POINT = 30;
+
+  public static List< Point > sample( double width, double height, double radius, Random random )
+  {
+    double cellSize = radius / Math.sqrt( 2 );
+    int columns = ( int ) Math.ceil( width / cellSize );
+    int rows = ( int ) Math.ceil( height / cellSize );
+    int[] grid = new int[columns * rows];
+    Arrays.fill( grid, -1 );
+
+    List< Point > points = Lists.of();
+    List< Integer > active = Lists.of();
+
+    Point first = new Point( random.nextDouble() * width, random.nextDouble() * height );
+    add( first, points, active, grid, columns, cellSize );
+
+    while ( !active.isEmpty() )
+    {
+      int activeIndex = random.nextInt( active.size() );
+      Point point = points.get( active.get( activeIndex ) );
+
+      boolean placed = false;
+      for ( int i = 0; i < CANDIDATES_PER_POINT; i++ )
+      {
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double distance = radius * ( 1 + random.nextDouble() );
+        double x = point.x + ( Math.cos( angle ) * distance );
+        double y = point.y + ( Math.sin( angle ) * distance );
+        if ( ( x < 0 ) || ( y < 0 ) || ( x >= width ) || ( y >= height ) )
+        {
+          continue;
+        }
+        if ( isFarEnough( x, y, radius, points, grid, columns, rows, cellSize ) )
+        {
+          add( new Point( x, y ), points, active, grid, columns, cellSize );
+          placed = true;
+          break;
+        }
+      }
+
+      if ( !placed )
+      {
+        // Swap remove, the order of the active list does not matter.
+        int last = active.size() - 1;
+        active.set( activeIndex, active.get( last ) );
+        active.remove( last );
+      }
+    }
+
+    return points;
+  }
+
+  private static void add( Point point, List< Point > points, List< Integer > active, int[] grid,
+      int columns, double cellSize )
+  {
+    int column = ( int ) ( point.x / cellSize );
+    int row = ( int ) ( point.y / cellSize );
+    grid[( row * columns ) + column] = points.size();
+    active.add( points.size() );
+    points.add( point );
+  }
+
+  private static boolean isFarEnough( double x, double y, double radius, List< Point > points,
+      int[] grid, int columns, int rows, double cellSize )
+  {
+    int column = ( int ) ( x / cellSize );
+    int row = ( int ) ( y / cellSize );
+    double radiusSquared = radius * radius;
+    for ( int r = Math.max( 0, row - 2 ); r <= Math.min( rows - 1, row + 2 ); r++ )
+    {
+      for ( int c = Math.max( 0, column - 2 ); c <= Math.min( columns - 1, column + 2 ); c++ )
+      {
+        int index = grid[( r * columns ) + c];
+        if ( ( index >= 0 ) && ( points.get( index ).distanceSquared( x, y ) < radiusSquared ) )
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 MrTaco
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package generator.util;
+
+import java.util.BitSet;
+import java.util.Random;
+
+public class BitSets
+{
+  /**
+   * Returns the index of a uniformly chosen set bit, skipping over unset bits a word at a time.
+   */
+  public static int chooseRandom( BitSet bits, Random random )
+  {
+    int randomIndex = random.nextInt( bits.cardinality() );
+    int bit = bits.nextSetBit( 0 );
+    for ( int i = 0; i < randomIndex; i++ )
+    {
+      bit = bits.nextSetBit( bit + 1 );
+    }
+    return bit;
+  }
+
+  /**
+   * Returns a uniformly chosen set of <code>count</code> distinct indexes below <code>size</code>.
+   * <p>
+   * Uses Floyd's algorithm, which draws exactly <code>count</code> random numbers and never needs a
+   * list of the candidates.
+   */
+  public static BitSet chooseRandomSubset( int size, int count, Random random )
+  {
+    BitSet chosen = new BitSet( size );
+    for ( int j = size - Math.min( count, size ); j < size; j++ )
+    {
+      int candidate = random.nextInt( j + 1 );
+      chosen.set( chosen.get( candidate ) ? j : candidate );
+    }
+    return chosen;
+  }
+}
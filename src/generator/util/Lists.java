@@ -23,12 +23,13 @@ package generator.util;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
 public class Lists
 {
-  public static < V > V chooseRandom( Collection< V > values )
+  public static < V > V chooseRandom( Collection< V > values, Random random )
   {
-    int randomIndex = ( int ) ( Math.random() * values.size() );
+    int randomIndex = random.nextInt( values.size() );
     return of( values ).get( randomIndex );
   }
 
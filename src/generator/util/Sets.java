@@ -21,18 +21,23 @@
 package generator.util;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
+/**
+ * Sets iterate in insertion order, so that random choices made from them depend only on the seed.
+ * A hash set orders keys that collide by identity hash code once a bucket grows large, which
+ * differs between runs.
+ */
 public class Sets
 {
   public static < V > Set< V > of()
   {
-    return new HashSet< V >();
+    return new LinkedHashSet< V >();
   }
 
   public static < V > Set< V > of( Collection< V > values )
   {
-    return new HashSet< V >( values );
+    return new LinkedHashSet< V >( values );
   }
 }